@@ -23,4 +23,33 @@ public class AndroidVideoPlayerFactory implements VideoPlayerFactory {
         return new VideoPlayerAndroid(mesh, shader);
     }
 
+    /**
+     * The config is ignored, decoding and buffering are left to the android {@link android.media.MediaPlayer}.
+     */
+    @Override
+    public VideoPlayer createVideoPlayer(VideoDecoderConfig config) throws VideoPlayerInitException {
+        return createVideoPlayer();
+    }
+
+    /**
+     * The config is ignored, decoding and buffering are left to the android {@link android.media.MediaPlayer}.
+     */
+    @Override
+    public VideoPlayer createVideoPlayer(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader)
+            throws VideoPlayerInitException {
+        return createVideoPlayer(mesh, shader);
+    }
+
+    /**
+     * The {@link android.media.MediaPlayer} is stopped, and reset when the next video is prepared.
+     */
+    @Override
+    public boolean recycleVideoPlayer(VideoPlayer videoPlayer) {
+        if (!(videoPlayer instanceof VideoPlayerAndroid)) {
+            return false;
+        }
+        videoPlayer.stop();
+        return true;
+    }
+
 }
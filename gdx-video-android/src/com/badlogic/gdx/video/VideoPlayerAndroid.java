@@ -35,6 +35,10 @@ import com.badlogic.gdx.backends.android.AndroidApplicationBase;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.GdxRuntimeException;
@@ -92,6 +96,18 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
 
     protected VideoPlayerListener listener;
 
+    /** The external texture can't be sampled by a batch, so for {@link #getTextureRegion()} it is copied to this. */
+    protected FrameBuffer frameBuffer;
+    protected VideoPlayerMesh conversionMesh;
+    protected final Matrix4 conversionProjection = new Matrix4();
+    protected final TextureRegion textureRegion = new TextureRegion();
+    protected boolean textureRegionReady = false;
+
+    protected boolean hidden = false;
+    protected boolean suspended = false;
+    protected long positionBeforeSuspend = 0;
+    protected long suspendTime = 0;
+
     public VideoPlayerAndroid() {
         this(new DefaultVideoPlayerMesh(), new ShaderProgram(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE));
     }
@@ -245,6 +261,54 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
         renderTexture();
     }
 
+    @Override
+    public boolean update() {
+        if (done || !prepared) {
+            return false;
+        }
+        if (!frameAvailable.compareAndSet(true, false)) {
+            return false;
+        }
+        videoTexture.updateTexImage();
+
+        int width = getVideoWidth();
+        int height = getVideoHeight();
+        if (frameBuffer != null && (frameBuffer.getWidth() != width || frameBuffer.getHeight() != height)) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+        }
+        if (frameBuffer == null) {
+            frameBuffer = new FrameBuffer(Pixmap.Format.RGB888, width, height, false);
+            frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+            if (conversionMesh == null) {
+                conversionMesh = new DefaultVideoPlayerMesh();
+            }
+            conversionMesh.setDimensions(0f, 0f, width, height);
+            conversionProjection.setToOrtho2D(0f, 0f, width, height);
+        }
+
+        frameBuffer.begin();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textures[0]);
+        shader.begin();
+        shader.setUniformMatrix(UNIFORM_PROJ_TRANSFORM, conversionProjection);
+        shader.setUniformi(UNIFORM_TEXTURE, 0);
+        conversionMesh.render(shader);
+        shader.end();
+        frameBuffer.end();
+
+        textureRegion.setRegion(frameBuffer.getColorBufferTexture());
+        // The offscreen buffer is upside down.
+        textureRegion.flip(false, true);
+        textureRegionReady = true;
+        return true;
+    }
+
+    @Override
+    public TextureRegion getTextureRegion() {
+        return textureRegionReady ? textureRegion : null;
+    }
+
     protected void renderTexture() {
         Gdx.gl.glEnable(GL20.GL_BLEND);
         Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
@@ -279,6 +343,41 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
         }
         prepared = false;
         done = true;
+        suspended = false;
+    }
+
+    @Override
+    public void seekTo(final long positionMillis) {
+        if (!prepared) {
+            throw new IllegalStateException("The player shall be prepared prior seeking.");
+        }
+        done = false;
+        if (suspended) {
+            // Once shown, playback continues from here.
+            positionBeforeSuspend = positionMillis;
+            suspendTime = System.currentTimeMillis();
+        }
+
+        androidThreadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                player.seekTo((int)positionMillis);
+            }
+        });
+    }
+
+    @Override
+    public long getPosition() {
+        if (!prepared) return 0;
+
+        return player.getCurrentPosition();
+    }
+
+    @Override
+    public long getDuration() {
+        if (!prepared) return -1;
+
+        return player.getDuration();
     }
 
     @Override
@@ -289,6 +388,7 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
 
     @Override
     public void pause() {
+        suspended = false;
         // If it is running
         if (prepared) {
             androidThreadHandler.post(new Runnable() {
@@ -302,6 +402,13 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
 
     @Override
     public void resume() {
+        if (hidden && prepared) {
+            // Starts once shown.
+            positionBeforeSuspend = player.getCurrentPosition();
+            suspendTime = System.currentTimeMillis();
+            suspended = true;
+            return;
+        }
         // If it is running
         if (prepared) {
             androidThreadHandler.post(new Runnable() {
@@ -343,6 +450,15 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
         if (mesh != null) {
             mesh.dispose();
         }
+
+        textureRegionReady = false;
+        if (frameBuffer != null) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+        }
+        if (conversionMesh != null) {
+            conversionMesh.dispose();
+        }
     }
 
     @Override
@@ -412,6 +528,50 @@ public class VideoPlayerAndroid implements VideoPlayer, OnFrameAvailableListener
         return repeat;
     }
 
+    /**
+     * While hidden, the MediaPlayer is paused. When shown again, it seeks to where the video should be by now.
+     */
+    @Override
+    public void setVisible(boolean visible) {
+        if (hidden != visible) return;
+        hidden = !visible;
+
+        if (hidden) {
+            if (!prepared || !player.isPlaying()) return;
+            positionBeforeSuspend = player.getCurrentPosition();
+            suspendTime = System.currentTimeMillis();
+            suspended = true;
+            androidThreadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    player.pause();
+                }
+            });
+        } else if (suspended) {
+            suspended = false;
+            long position = positionBeforeSuspend + System.currentTimeMillis() - suspendTime;
+            long duration = player.getDuration();
+            if (duration > 0) {
+                position = repeat ? position % duration : Math.min(position, duration);
+            }
+            final int seekPosition = (int)position;
+            androidThreadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    player.seekTo(seekPosition);
+                    player.start();
+                }
+            });
+        }
+    }
+
+    /**
+     * The MediaPlayer always decodes at the size of the video.
+     */
+    @Override
+    public void setDrawnSize(int width, int height) {
+    }
+
     @Override
     public FileHandle getVideoFileHandle() {
         return currentFile;
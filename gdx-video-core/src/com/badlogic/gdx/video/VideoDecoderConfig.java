@@ -0,0 +1,59 @@
+package com.badlogic.gdx.video;
+
+/**
+ * Per player decoding parameters.
+ * Platforms that decode through a system media player may ignore some or all of these values.
+ */
+public class VideoDecoderConfig {
+
+    /**
+     * The amount of decoded frames the decoder keeps ahead of playback. Each of them takes a full frame of memory, so
+     * a short looping background video can get away with 3, while a cutscene benefits from a deeper buffer. Should be
+     * at least 2.
+     */
+    public int numBufferedFrames = 10;
+
+    /**
+     * The size in bytes of the audio buffer that decoded audio can be taken from in chunks. Rounded down to whole
+     * samples, a multiple of 4 bytes. The desktop player doesn't use it, it copies as much audio as the audio device
+     * asks for at once.
+     */
+    public int audioBufferSize = 1024;
+
+    /**
+     * The size in bytes of the blocks in which the video is read, when it is read through Java. Every block is a call
+     * from the decoder into Java, so larger blocks mean fewer calls. Files that the decoder opens by itself are read
+     * in blocks of FFmpeg's choosing.
+     */
+    public int ioBufferSize = 256 * 1024;
+
+    /**
+     * The amount of demuxed packets that can be waiting for the decoder, per stream. This bounds the memory used
+     * when one stream is read much further ahead than the other. Should be large enough to cover the interleaving of
+     * the video file.
+     */
+    public int numQueuedPackets = 128;
+
+    /**
+     * The amount of threads the video codec may use to decode frames, or slices of a frame, in parallel. More threads
+     * let high resolution videos decode in real time, but take cores away from the rest of the game, and add a frame
+     * of latency per thread. When 0, half of the available cores are used, but no more than 4.
+     */
+    public int numDecodeThreads = 0;
+
+    public VideoDecoderConfig() {
+    }
+
+    public VideoDecoderConfig(VideoDecoderConfig config) {
+        set(config);
+    }
+
+    public VideoDecoderConfig set(VideoDecoderConfig config) {
+        numBufferedFrames = config.numBufferedFrames;
+        audioBufferSize = config.audioBufferSize;
+        ioBufferSize = config.ioBufferSize;
+        numQueuedPackets = config.numQueuedPackets;
+        numDecodeThreads = config.numDecodeThreads;
+        return this;
+    }
+}
@@ -18,6 +18,7 @@ package com.badlogic.gdx.video;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.Disposable;
 
@@ -37,7 +38,9 @@ public interface VideoPlayer extends Disposable {
 
     /**
      * This function will prepare the VideoPlayer to play the given file. If a video is already played, it
-     * will be stopped, and the new video will be loaded.
+     * will be stopped, and the new video will be loaded. Preparing happens in the background, so this returns
+     * right away. Once done, {@link #isPrepared()} returns true and
+     * {@link VideoPlayerListener#onVideoPrepared(VideoPlayer, float, float)} is called on the render thread.
      *
      * @param file The file containing the video which should be played.
      */
@@ -62,6 +65,27 @@ public interface VideoPlayer extends Disposable {
      */
     void render(float x, float y, float width, float height);
 
+    /**
+     * Advances playback like {@link #render(float, float, float, float)} does, but instead of drawing the frame
+     * that is due, makes it available through {@link #getTextureRegion()}. Should be called once per frame instead of
+     * render, and outside of {@link com.badlogic.gdx.graphics.g2d.Batch#begin()} and
+     * {@link com.badlogic.gdx.graphics.g2d.Batch#end()}, since the frame is converted by rendering it through the
+     * shader of the player to an offscreen buffer.
+     *
+     * @return Whether the region shows a new frame.
+     */
+    boolean update();
+
+    /**
+     * @return The frame that was made current by the last {@link #update()}, as a region that can be drawn with any
+     *         {@link com.badlogic.gdx.graphics.g2d.Batch}, so the video is batched with everything around it. The
+     *         color set through {@link #setColor(Color)} is not applied, the color of the batch is used instead. A
+     *         shader the player was created with is applied when the frame is rendered into the region, not when the
+     *         region is drawn, so it does not see the projection or position the region is drawn with. The region
+     *         object stays the same, only its texture and coordinates change. Null until a frame was updated.
+     */
+    TextureRegion getTextureRegion();
+
     void setProjectionMatrix(Matrix4 projectionMatrix);
 
     /**
@@ -80,6 +104,26 @@ public interface VideoPlayer extends Disposable {
      */
     void stop();
 
+    /**
+     * Moves playback to the given position. Playing or paused videos stay playing or paused, and a video that has
+     * completed can be played again from the new position. Can only be called after the video got prepared.
+     *
+     * @param positionMillis The position in milliseconds from the start of the video.
+     */
+    void seekTo(long positionMillis);
+
+    /**
+     * @return The current playback position in milliseconds from the start of the video, or 0 when no video is
+     *         prepared.
+     */
+    long getPosition();
+
+    /**
+     * @return The duration of the video in milliseconds, or -1 when no video is prepared or the duration is not
+     *         known.
+     */
+    long getDuration();
+
     void setListener(VideoPlayerListener listener);
     VideoPlayerListener getListener();
 
@@ -132,6 +176,27 @@ public interface VideoPlayer extends Disposable {
 
     boolean isRepeat();
 
+    /**
+     * Tells the player whether its video is shown. While hidden, the player may stop decoding and mute the audio to
+     * save work, but the position keeps moving on as if the video played. When shown again, playback continues at
+     * that position. Players are visible until told otherwise. Widgets call this by themselves, see
+     * {@link com.badlogic.gdx.video.scene2d.BaseVideoPlayerWidget#setSuspendWhenHidden(boolean)}.
+     *
+     * @param visible Whether the video is drawn.
+     */
+    void setVisible(boolean visible);
+
+    /**
+     * Tells the player the size in pixels its video is drawn at, so it may decode the video at that size instead of
+     * its own. This saves converting and uploading pixels that are never seen. Rendering through
+     * {@link #render(float, float, float, float)} figures out the size by itself, and widgets call this when they
+     * draw. Players that decode through the system may ignore it.
+     *
+     * @param width The drawn width in pixels.
+     * @param height The drawn height in pixels.
+     */
+    void setDrawnSize(int width, int height);
+
     /** @return currently used video file (if any). */
     FileHandle getVideoFileHandle();
 }
@@ -50,6 +50,28 @@ public final class VideoPlayerCreator {
         return initFactory().createVideoPlayer(mesh, shader);
     }
 
+    /**
+     * @see VideoPlayerFactory#createVideoPlayer(VideoDecoderConfig)
+     */
+    public static VideoPlayer createVideoPlayer(VideoDecoderConfig config) throws VideoPlayerInitException {
+        return initFactory().createVideoPlayer(config);
+    }
+
+    /**
+     * @see VideoPlayerFactory#createVideoPlayer(VideoDecoderConfig, VideoPlayerMesh, ShaderProgram)
+     */
+    public static VideoPlayer createVideoPlayer(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader)
+            throws VideoPlayerInitException {
+        return initFactory().createVideoPlayer(config, mesh, shader);
+    }
+
+    /**
+     * @see VideoPlayerFactory#recycleVideoPlayer(VideoPlayer)
+     */
+    public static boolean recycleVideoPlayer(VideoPlayer videoPlayer) throws VideoPlayerInitException {
+        return initFactory().recycleVideoPlayer(videoPlayer);
+    }
+
     private static synchronized VideoPlayerFactory initFactory() throws VideoPlayerInitException {
         if (videoPlayerFactory == null) {
             ApplicationType appType = Gdx.app.getType();
@@ -24,4 +24,36 @@ public interface VideoPlayerFactory {
      */
     VideoPlayer createVideoPlayer(VideoPlayerMesh mesh, ShaderProgram shader) throws VideoPlayerInitException;
 
+    /**
+     * Creates a VideoPlayer with default rendering parameters, which decodes using the given parameters.
+     *
+     * @param config The decoding parameters. The player keeps a copy, later changes to it have no effect.
+     * @return A new instance of VideoPlayer.
+     * @throws VideoPlayerInitException If an error occurred while trying to instantiate the video player.
+     */
+    VideoPlayer createVideoPlayer(VideoDecoderConfig config) throws VideoPlayerInitException;
+
+    /**
+     * Creates a VideoPlayer with a custom rendering pipeline, which decodes using the given parameters.
+     *
+     * @param config The decoding parameters. The player keeps a copy, later changes to it have no effect.
+     * @param mesh A mesh used to draw the texture on.
+     * @param shader The shader program that will be used along the provided mesh.
+     * @return A new instance of VideoPlayer.
+     * @throws VideoPlayerInitException If an error occurred while trying to instantiate the video player.
+     * @see #createVideoPlayer(VideoPlayerMesh, ShaderProgram)
+     */
+    VideoPlayer createVideoPlayer(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader)
+            throws VideoPlayerInitException;
+
+    /**
+     * Brings a player that is done with its video back to the state it was in before its first video was prepared,
+     * so it can be handed out again by a {@link VideoPlayerPool}. The player keeps whatever this platform can use
+     * again for the next video, such as its shader, textures and buffers.
+     *
+     * @param videoPlayer A player created by this factory.
+     * @return Whether the player can be used again. If not, the pool disposes it.
+     */
+    boolean recycleVideoPlayer(VideoPlayer videoPlayer);
+
 }
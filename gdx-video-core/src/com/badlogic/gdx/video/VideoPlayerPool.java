@@ -0,0 +1,118 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Keeps video players that are done with their video, so the next video can be played without creating a new
+ * player. Creating a player compiles a shader and allocates a mesh, and preparing its first video allocates textures
+ * and the frame buffer. A player from the pool already has all of these, and keeps its textures and frame buffer when
+ * the next video has the same dimensions.
+ * <p/>
+ * Players are created through {@link VideoPlayerCreator}, and recycled through
+ * {@link VideoPlayerFactory#recycleVideoPlayer(VideoPlayer)}. Should only be used from the render thread.
+ */
+public class VideoPlayerPool implements Disposable {
+
+    /** The maximum amount of players that are kept. */
+    public final int max;
+
+    private final VideoDecoderConfig config;
+    private final Array<VideoPlayer> freePlayers;
+
+    /**
+     * Creates a pool that keeps up to 4 players, which decode with the default parameters.
+     */
+    public VideoPlayerPool() {
+        this(new VideoDecoderConfig(), 4);
+    }
+
+    /**
+     * @param config The decoding parameters of the players. The pool keeps a copy, later changes to it have no effect.
+     * @param max The maximum amount of players that are kept. Players that are freed when the pool is full are
+     *        disposed.
+     */
+    public VideoPlayerPool(VideoDecoderConfig config, int max) {
+        this.config = new VideoDecoderConfig(config);
+        this.max = max;
+        freePlayers = new Array<VideoPlayer>(false, max);
+    }
+
+    /**
+     * @return A player that is ready to prepare a video, either a recycled one or a new one.
+     * @throws VideoPlayerInitException If a new player had to be created, and creating it failed.
+     */
+    public VideoPlayer obtain() throws VideoPlayerInitException {
+        if (freePlayers.size > 0) {
+            return freePlayers.pop();
+        }
+        return VideoPlayerCreator.createVideoPlayer(config);
+    }
+
+    /**
+     * Creates players up to the given amount ahead of time, so they don't have to be created when needed.
+     *
+     * @param count The amount of players the pool should hold, capped at {@link #max}.
+     * @throws VideoPlayerInitException If creating a player failed.
+     */
+    public void fill(int count) throws VideoPlayerInitException {
+        count = Math.min(count, max);
+        while (freePlayers.size < count) {
+            freePlayers.add(VideoPlayerCreator.createVideoPlayer(config));
+        }
+    }
+
+    /**
+     * Stops the player and puts it back in the pool. Its listener is removed, and its volume, color, repeat setting
+     * and visibility are reset. When the pool is full, or the player can't be recycled, it is disposed instead.
+     */
+    public void free(VideoPlayer videoPlayer) {
+        if (videoPlayer == null) {
+            throw new IllegalArgumentException("videoPlayer cannot be null.");
+        }
+
+        boolean recycled = false;
+        if (freePlayers.size < max) {
+            try {
+                recycled = VideoPlayerCreator.recycleVideoPlayer(videoPlayer);
+            } catch (VideoPlayerInitException e) {
+                recycled = false;
+            }
+        }
+        if (!recycled) {
+            videoPlayer.dispose();
+            return;
+        }
+
+        videoPlayer.setListener(null);
+        videoPlayer.setVolume(1f);
+        videoPlayer.setColor(Color.WHITE);
+        videoPlayer.setRepeat(false);
+        videoPlayer.setVisible(true);
+        freePlayers.add(videoPlayer);
+    }
+
+    /**
+     * @return The amount of players that are kept.
+     */
+    public int getFree() {
+        return freePlayers.size;
+    }
+
+    /**
+     * Disposes all players that are kept. Players that are in use are not affected, and may still be freed to the
+     * pool afterwards.
+     */
+    public void clear() {
+        for (VideoPlayer videoPlayer : freePlayers) {
+            videoPlayer.dispose();
+        }
+        freePlayers.clear();
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
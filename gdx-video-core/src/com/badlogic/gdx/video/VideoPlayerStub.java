@@ -18,6 +18,7 @@ package com.badlogic.gdx.video;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Matrix4;
 
 public class VideoPlayerStub implements VideoPlayer {
@@ -37,6 +38,16 @@ public class VideoPlayerStub implements VideoPlayer {
 
     }
 
+    @Override
+    public boolean update() {
+        return false;
+    }
+
+    @Override
+    public TextureRegion getTextureRegion() {
+        return null;
+    }
+
     @Override
     public boolean isPrepared() {
         return true;
@@ -59,6 +70,20 @@ public class VideoPlayerStub implements VideoPlayer {
     public void stop() {
     }
 
+    @Override
+    public void seekTo(long positionMillis) {
+    }
+
+    @Override
+    public long getPosition() {
+        return 0;
+    }
+
+    @Override
+    public long getDuration() {
+        return -1;
+    }
+
     @Override
     public void setListener(VideoPlayerListener listener) {
 
@@ -112,6 +137,14 @@ public class VideoPlayerStub implements VideoPlayer {
         return false;
     }
 
+    @Override
+    public void setVisible(boolean visible) {
+    }
+
+    @Override
+    public void setDrawnSize(int width, int height) {
+    }
+
     @Override
     public FileHandle getVideoFileHandle() {
         return null;
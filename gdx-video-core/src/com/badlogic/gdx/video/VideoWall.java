@@ -0,0 +1,190 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Batches the drawing of many small videos, for screens that show a grid of video thumbnails. Every video still
+ * decodes and uploads its frames into textures of its own, the wall then copies them on the GPU into one shared atlas
+ * texture. It saves the texture switches and draw calls of drawing many videos, not the cost of uploading them.
+ * <p/>
+ * The atlas is divided into equally sized cells, one per video. Each frame is scaled down or up to fit its cell while
+ * keeping its aspect ratio, and centered in it. {@link #update()} advances all videos, and copies the frames that
+ * changed into their cells in a single pass. The regions returned by {@link #getTextureRegion(VideoPlayer)} cover the
+ * part of the cell the frame was copied to, and all share the atlas texture, so a batch draws the whole wall in a
+ * single call. Widgets use the wall through
+ * {@link com.badlogic.gdx.video.scene2d.BaseVideoPlayerWidget#setVideoWall(VideoWall)}.
+ * <p/>
+ * Should only be used from the render thread.
+ */
+public class VideoWall implements Disposable {
+
+    private static final class Cell {
+        final int x, y;
+        final TextureRegion region;
+        VideoPlayer videoPlayer;
+        boolean filled;
+        boolean dirty;
+
+        Cell(int x, int y, TextureRegion region) {
+            this.x = x;
+            this.y = y;
+            this.region = region;
+        }
+    }
+
+    private final int cellWidth, cellHeight;
+    private final Cell[] cells;
+    private final FrameBuffer atlas;
+    private final SpriteBatch batch;
+    private final Matrix4 projection = new Matrix4();
+
+    /**
+     * @param columns The amount of cells next to each other.
+     * @param rows The amount of cells above each other.
+     * @param cellWidth The width of a cell in pixels, the largest width the videos are copied at.
+     * @param cellHeight The height of a cell in pixels, the largest height the videos are copied at.
+     */
+    public VideoWall(int columns, int rows, int cellWidth, int cellHeight) {
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+
+        int width = columns * cellWidth;
+        int height = rows * cellHeight;
+        atlas = new FrameBuffer(Pixmap.Format.RGB888, width, height, false);
+        Texture texture = atlas.getColorBufferTexture();
+        texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+
+        cells = new Cell[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int x = column * cellWidth;
+                int y = row * cellHeight;
+                TextureRegion region = new TextureRegion(texture, x, y, cellWidth, cellHeight);
+                // The atlas is upside down.
+                region.flip(false, true);
+                cells[row * columns + column] = new Cell(x, y, region);
+            }
+        }
+
+        batch = new SpriteBatch(cells.length);
+        // Frames replace what was in their cell.
+        batch.disableBlending();
+        projection.setToOrtho2D(0f, 0f, width, height);
+        batch.setProjectionMatrix(projection);
+    }
+
+    /**
+     * Gives the video a cell of the wall. From now on, {@link #update()} advances it, so it should no longer be
+     * rendered or updated by itself.
+     *
+     * @return Whether the video is on the wall. False when all cells are taken.
+     */
+    public boolean add(VideoPlayer videoPlayer) {
+        if (findCell(videoPlayer) != null) {
+            return true;
+        }
+        Cell cell = findCell(null);
+        if (cell == null) {
+            return false;
+        }
+        cell.videoPlayer = videoPlayer;
+        cell.filled = false;
+        cell.dirty = false;
+        return true;
+    }
+
+    /**
+     * Frees the cell of the video, which should be done before the player is disposed or used elsewhere.
+     */
+    public void remove(VideoPlayer videoPlayer) {
+        Cell cell = findCell(videoPlayer);
+        if (cell != null) {
+            cell.videoPlayer = null;
+        }
+    }
+
+    /**
+     * @return The part of the video's cell its frame was copied to, or null when the video is not on the wall, or none
+     *         of its frames was copied yet.
+     */
+    public TextureRegion getTextureRegion(VideoPlayer videoPlayer) {
+        Cell cell = findCell(videoPlayer);
+        return cell != null && cell.filled ? cell.region : null;
+    }
+
+    /**
+     * Advances all videos on the wall, and copies their new frames into the atlas. Should be called once per frame,
+     * before the wall is drawn, and outside of any batch's begin and end.
+     */
+    public void update() {
+        boolean anyDirty = false;
+        for (Cell cell : cells) {
+            if (cell.videoPlayer != null && cell.videoPlayer.update()) {
+                cell.dirty = true;
+                anyDirty = true;
+            }
+        }
+        if (!anyDirty) return;
+
+        atlas.begin();
+        batch.begin();
+        batch.setColor(Color.WHITE);
+        for (Cell cell : cells) {
+            if (!cell.dirty) continue;
+            cell.dirty = false;
+
+            TextureRegion frame = cell.videoPlayer.getTextureRegion();
+            if (frame != null) {
+                // The largest part of the cell with the aspect ratio of the frame, centered in the cell. The rest of
+                // the cell is never drawn.
+                int frameWidth = Math.max(1, frame.getRegionWidth());
+                int frameHeight = Math.max(1, frame.getRegionHeight());
+                float scale = Math.min((float)cellWidth / frameWidth, (float)cellHeight / frameHeight);
+                int width = Math.max(1, Math.min(cellWidth, Math.round(frameWidth * scale)));
+                int height = Math.max(1, Math.min(cellHeight, Math.round(frameHeight * scale)));
+                int x = cell.x + (cellWidth - width) / 2;
+                int y = cell.y + (cellHeight - height) / 2;
+
+                batch.draw(frame, x, y, width, height);
+                cell.region.setRegion(x, y, width, height);
+                // The atlas is upside down.
+                cell.region.flip(false, true);
+                cell.filled = true;
+            }
+        }
+        batch.end();
+        atlas.end();
+    }
+
+    /**
+     * @return The atlas all videos are packed into.
+     */
+    public Texture getTexture() {
+        return atlas.getColorBufferTexture();
+    }
+
+    private Cell findCell(VideoPlayer videoPlayer) {
+        for (Cell cell : cells) {
+            if (cell.videoPlayer == videoPlayer) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Disposes the atlas. The videos on the wall are not disposed.
+     */
+    @Override
+    public void dispose() {
+        atlas.dispose();
+        batch.dispose();
+    }
+}
@@ -2,31 +2,112 @@ package com.badlogic.gdx.video.scene2d;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Widget;
 import com.badlogic.gdx.utils.Pools;
+import com.badlogic.gdx.utils.viewport.Viewport;
 import com.badlogic.gdx.video.VideoPlayer;
+import com.badlogic.gdx.video.VideoWall;
 
-/** Base class that hosts and uses {@link VideoPlayer} to playback the video. */
+/** Base class that hosts and uses {@link VideoPlayer} to playback the video.
+ * <p/>
+ * Playback is advanced in {@link #act(float)}, and the frame is drawn through the batch of the stage, so the video is
+ * batched with the rest of the UI. The stage should be acted on every frame for the video to play.
+ * <p/>
+ * When a {@link VideoWall} is set, the video is advanced by the wall instead, and drawn from the wall's atlas.
+ * <p/>
+ * A video that was not drawn in the last frame, because the widget or one of its parents is invisible, fully
+ * transparent, or culled by a {@link com.badlogic.gdx.scenes.scene2d.ui.ScrollPane}, is told to be hidden through
+ * {@link VideoPlayer#setVisible(boolean)}, so it stops decoding until it is drawn again. The size the widget is drawn
+ * at on screen is passed on through {@link VideoPlayer#setDrawnSize(int, int)}. */
 public abstract class BaseVideoPlayerWidget extends Widget {
     protected static final Color tmpColor = new Color();
 
     protected VideoPlayer videoPlayer;
+    protected VideoWall videoWall;
+    protected boolean suspendWhenHidden = true;
+    private boolean drawn = false;
 
     public VideoPlayer getVideoPlayer() {
         return videoPlayer;
     }
 
+    public VideoWall getVideoWall() {
+        return videoWall;
+    }
+
+    /** Makes the video be drawn from a cell of the given wall, or on its own when null. When the wall is full, the
+     * video is drawn on its own as well. {@link VideoWall#update()} should be called every frame. */
+    public void setVideoWall(VideoWall videoWall) {
+        removeFromVideoWall(videoPlayer);
+        this.videoWall = videoWall;
+    }
+
+    public boolean isSuspendWhenHidden() {
+        return suspendWhenHidden;
+    }
+
+    /** Sets whether the video is suspended while the widget is not drawn, which is the default. Should be disabled
+     * when the audio of the video should be heard even though the video can't be seen. */
+    public void setSuspendWhenHidden(boolean suspendWhenHidden) {
+        this.suspendWhenHidden = suspendWhenHidden;
+        if (!suspendWhenHidden && videoPlayer != null) {
+            videoPlayer.setVisible(true);
+        }
+    }
+
+    /** Frees the cell of the given player, should be called before the player is no longer used by this widget. */
+    protected void removeFromVideoWall(VideoPlayer videoPlayer) {
+        if (videoWall != null && videoPlayer != null) {
+            videoWall.remove(videoPlayer);
+        }
+    }
+
+    @Override
+    public void act(float delta) {
+        super.act(delta);
+        if (videoPlayer == null) return;
+
+        if (suspendWhenHidden) {
+            // Actions run before drawing, so this uses whether the widget was drawn in the last frame.
+            videoPlayer.setVisible(drawn);
+            drawn = false;
+        }
+
+        if (videoWall == null || !videoWall.add(videoPlayer)) {
+            videoPlayer.update();
+        }
+    }
+
     @Override
     public void draw(Batch batch, float parentAlpha) {
         super.validate();
         if (videoPlayer == null) return;
 
-        batch.end();
         Color col = getColor();
-        videoPlayer.setColor(tmpColor.set(col.r, col.g, col.b, col.a * parentAlpha));
-        videoPlayer.setProjectionMatrix(batch.getProjectionMatrix());
-        videoPlayer.render(getX(), getY(), getWidth(), getHeight());
-        batch.begin();
+        float alpha = col.a * parentAlpha;
+        if (alpha <= 0) return;
+        drawn = true;
+
+        Stage stage = getStage();
+        if (stage != null) {
+            Viewport viewport = stage.getViewport();
+            videoPlayer.setDrawnSize((int)(getWidth() * viewport.getScreenWidth() / viewport.getWorldWidth()),
+                    (int)(getHeight() * viewport.getScreenHeight() / viewport.getWorldHeight()));
+        }
+
+        TextureRegion frame = null;
+        if (videoWall != null) {
+            frame = videoWall.getTextureRegion(videoPlayer);
+        }
+        if (frame == null) {
+            frame = videoPlayer.getTextureRegion();
+        }
+        if (frame == null) return;
+
+        batch.setColor(col.r, col.g, col.b, alpha);
+        batch.draw(frame, getX(), getY(), getWidth(), getHeight());
     }
 
     @Override
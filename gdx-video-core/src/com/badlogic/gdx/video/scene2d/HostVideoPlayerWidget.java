@@ -43,6 +43,13 @@ public class HostVideoPlayerWidget extends BaseVideoPlayerWidget {
     /** @return the previous video player instance was being used. */
     public VideoPlayer setVideoPlayer(VideoPlayer videoPlayer) {
         VideoPlayer oldVideoPlayer = this.videoPlayer;
+        if (oldVideoPlayer != videoPlayer) {
+            removeFromVideoWall(oldVideoPlayer);
+            // It may be shown elsewhere now.
+            if (oldVideoPlayer != null) {
+                oldVideoPlayer.setVisible(true);
+            }
+        }
         this.videoPlayer = videoPlayer;
 
         // Clear out the lister if it was set from #setupCompletionEvents().
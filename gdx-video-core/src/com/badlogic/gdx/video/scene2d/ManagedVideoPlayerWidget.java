@@ -8,6 +8,7 @@ import com.badlogic.gdx.video.VideoPlayer;
 import com.badlogic.gdx.video.VideoPlayerCreator;
 import com.badlogic.gdx.video.VideoPlayerInitException;
 import com.badlogic.gdx.video.VideoPlayerListener;
+import com.badlogic.gdx.video.VideoPlayerPool;
 
 /** Video playback widget.
  * It manages own {@link VideoPlayer} internally,
@@ -15,12 +16,16 @@ import com.badlogic.gdx.video.VideoPlayerListener;
  * The {@link VideoPlayer} instance gets available once the actor is added to a stage.
  * <p/>
  * The widget fires up {@link VideoCompletionEvent} once the playback is completed.
+ * <p/>
+ * When a {@link VideoPlayerPool} is set, the player is taken from the pool when the actor is added to a stage, and
+ * given back when it is removed, so moving between screens with videos creates no new players.
  * */
 //TODO Solve global app pause/resume issue. As a video keeps playing while the app is in pause state.
 public class ManagedVideoPlayerWidget extends BaseVideoPlayerWidget {
     private static final String TAG = ManagedVideoPlayerWidget.class.getSimpleName();
 
     private FileHandle videoFile;
+    private VideoPlayerPool videoPlayerPool;
 
     private boolean initialized = false;
     private boolean repeat = false;
@@ -33,6 +38,23 @@ public class ManagedVideoPlayerWidget extends BaseVideoPlayerWidget {
         this.videoFile = videoFile;
     }
 
+    public ManagedVideoPlayerWidget(FileHandle videoFile, VideoPlayerPool videoPlayerPool) {
+        this.videoFile = videoFile;
+        this.videoPlayerPool = videoPlayerPool;
+    }
+
+    public VideoPlayerPool getVideoPlayerPool() {
+        return videoPlayerPool;
+    }
+
+    /**
+     * Sets the pool players are taken from, or null to create a player of its own. Takes effect the next time the
+     * actor is added to a stage.
+     */
+    public void setVideoPlayerPool(VideoPlayerPool videoPlayerPool) {
+        this.videoPlayerPool = videoPlayerPool;
+    }
+
     public FileHandle getVideoFile() {
         return videoFile;
     }
@@ -79,7 +101,7 @@ public class ManagedVideoPlayerWidget extends BaseVideoPlayerWidget {
         if (initialized) return;
 
         try {
-            videoPlayer = VideoPlayerCreator.createVideoPlayer();
+            videoPlayer = videoPlayerPool != null ? videoPlayerPool.obtain() : VideoPlayerCreator.createVideoPlayer();
         } catch (VideoPlayerInitException e) {
             Gdx.app.error(TAG, "Error initializing video player.", e);
             videoPlayer = null;
@@ -109,6 +131,7 @@ public class ManagedVideoPlayerWidget extends BaseVideoPlayerWidget {
             public void onVideoError(VideoPlayer videoPlayer, Exception exception) {
                 Gdx.app.error(TAG, "Video player error occurred.", exception);
                 if (ManagedVideoPlayerWidget.this.videoPlayer != null) {
+                    removeFromVideoWall(ManagedVideoPlayerWidget.this.videoPlayer);
                     ManagedVideoPlayerWidget.this.videoPlayer.dispose();
                     ManagedVideoPlayerWidget.this.videoPlayer = null;
                 }
@@ -123,7 +146,12 @@ public class ManagedVideoPlayerWidget extends BaseVideoPlayerWidget {
     protected void reset() {
         if (!initialized) return;
 
-        videoPlayer.dispose();
+        removeFromVideoWall(videoPlayer);
+        if (videoPlayerPool != null) {
+            videoPlayerPool.free(videoPlayer);
+        } else {
+            videoPlayer.dispose();
+        }
         videoPlayer = null;
 
         initialized = false;
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#include "DecodeScheduler.hpp"
+#include "Utilities.h"
+
+#include <algorithm>
+
+DecodeScheduler* DecodeScheduler::getInstance() {
+    //Created on first use and never deleted, the workers may outlive everything else at exit
+    static DecodeScheduler* instance = new DecodeScheduler();
+    return instance;
+}
+
+DecodeScheduler::DecodeScheduler() : stepFinished(mutex), maxWorkersChanged(mutex) {
+    maxWorkers = VIDEOPLAYER_DEFAULT_DECODE_WORKERS;
+    idleWorkers = 0;
+}
+
+DecodeScheduler::Worker::Worker(DecodeScheduler* scheduler, int index) : scheduler(scheduler), index(index) {
+}
+
+void DecodeScheduler::Worker::run() {
+    scheduler->runWorker(index);
+}
+
+void DecodeScheduler::add(DecodeTask* task) {
+    mutex.lock();
+    task->running = false;
+    tasks.push_back(task);
+    startWorkers();
+    wakeAll();
+    mutex.unlock();
+}
+
+void DecodeScheduler::remove(DecodeTask* task) {
+    mutex.lock();
+    std::vector<DecodeTask*>::iterator it = std::find(tasks.begin(), tasks.end(), task);
+    if(it != tasks.end()) {
+        tasks.erase(it);
+    }
+    while(task->running) {
+        stepFinished.wait();
+    }
+    mutex.unlock();
+}
+
+void DecodeScheduler::waitUntilIdle(DecodeTask* task) {
+    mutex.lock();
+    while(task->running) {
+        stepFinished.wait();
+    }
+    mutex.unlock();
+}
+
+void DecodeScheduler::wake() {
+    //Pairs with the fence in runWorker: either the worker that looks for work sees what made the task runnable, or
+    //this sees the worker.
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
+    if(__atomic_load_n(&idleWorkers, __ATOMIC_SEQ_CST) > 0) {
+        workAvailable.post();
+    }
+}
+
+void DecodeScheduler::wakeAll() {
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
+    int idle = __atomic_load_n(&idleWorkers, __ATOMIC_SEQ_CST);
+    for(int i = 0; i < idle; i++) {
+        workAvailable.post();
+    }
+}
+
+void DecodeScheduler::setMaxWorkers(int maxWorkers) {
+    mutex.lock();
+    this->maxWorkers = maxWorkers < 1 ? 1 : maxWorkers;
+    if(!tasks.empty()) {
+        startWorkers();
+    }
+    maxWorkersChanged.broadcast();
+    wakeAll();
+    mutex.unlock();
+}
+
+int DecodeScheduler::getMaxWorkers() {
+    mutex.lock();
+    int result = maxWorkers;
+    mutex.unlock();
+    return result;
+}
+
+void DecodeScheduler::startWorkers() {
+    while((int)workers.size() < maxWorkers) {
+        Worker* worker = new Worker(this, workers.size());
+        if(!worker->start()) {
+            logError("[DecodeScheduler::startWorkers] Could not start a decode worker\n");
+            delete worker;
+            break;
+        }
+        workers.push_back(worker);
+    }
+}
+
+DecodeTask* DecodeScheduler::pickTask() {
+    DecodeTask* best = NULL;
+    int bestPriority = 0;
+    double bestLead = 0;
+    for(size_t i = 0; i < tasks.size(); i++) {
+        DecodeTask* task = tasks[i];
+        if(task->running || !task->needsDecoding()) {
+            continue;
+        }
+        int priority = task->getDecodePriority();
+        double lead = task->getDecodeLead();
+        if(best == NULL || priority > bestPriority || (priority == bestPriority && lead < bestLead)) {
+            best = task;
+            bestPriority = priority;
+            bestLead = lead;
+        }
+    }
+    return best;
+}
+
+void DecodeScheduler::runWorker(int index) {
+    mutex.lock();
+    while(true) {
+        if(index >= maxWorkers) {
+            //Workers beyond the budget stay parked until the budget is raised again. They wait apart from the others,
+            //so they never take a wake up that was meant for a worker that can decode.
+            maxWorkersChanged.wait();
+            continue;
+        }
+        //Counted as idle before looking, so a wake up while looking is never lost. A wake up that turns out not to be
+        //needed only makes the worker look once more.
+        __atomic_add_fetch(&idleWorkers, 1, __ATOMIC_SEQ_CST);
+        __atomic_thread_fence(__ATOMIC_SEQ_CST);
+        DecodeTask* task = pickTask();
+        if(task == NULL) {
+            //Also when there are no tasks at all, the worker stays parked here until a task is added
+            mutex.unlock();
+            workAvailable.wait();
+            mutex.lock();
+            __atomic_sub_fetch(&idleWorkers, 1, __ATOMIC_SEQ_CST);
+            continue;
+        }
+        __atomic_sub_fetch(&idleWorkers, 1, __ATOMIC_SEQ_CST);
+
+        task->running = true;
+        mutex.unlock();
+        task->decodeStep();
+        mutex.lock();
+        task->running = false;
+        stepFinished.broadcast();
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+#include <vector>
+
+#include "Thread.hpp"
+#include "Mutex.hpp"
+#include "CondVar.hpp"
+#include "Semaphore.hpp"
+
+//The amount of workers used until setMaxWorkers is called.
+#define VIDEOPLAYER_DEFAULT_DECODE_WORKERS 2
+
+/**
+ * @brief The DecodeTask class is the work a decoder hands to the DecodeScheduler. A step is run by one worker at a
+ * time, so a task never runs concurrently with itself.
+ */
+class DecodeTask {
+    friend class DecodeScheduler;
+public:
+    DecodeTask() : running(false) {
+    }
+    virtual ~DecodeTask() {
+    }
+
+    /**
+     * @brief needsDecoding Called by the workers without any lock of the task, so it should only be a cheap check.
+     * Idle workers are not woken by anything but DecodeScheduler::wake, so whatever makes this return true again should
+     * call it.
+     * @return Whether a step can be run right now.
+     */
+    virtual bool needsDecoding() = 0;
+
+    /**
+     * @return The priority of the task. Tasks with a higher priority are always served first.
+     */
+    virtual int getDecodePriority() = 0;
+
+    /**
+     * @return How long playback can continue with what is already decoded, in seconds. Among tasks with the same
+     * priority, the one with the smallest lead is served first.
+     */
+    virtual double getDecodeLead() = 0;
+
+    /**
+     * @brief decodeStep Does a bounded amount of work, typically decoding a single frame.
+     */
+    virtual void decodeStep() = 0;
+private:
+    bool running;
+};
+
+/**
+ * @brief The DecodeScheduler class is a process wide pool of worker threads, which run the steps of all decoders.
+ * Instead of each decoder having its own thread, a fixed amount of workers pick the most urgent decoder every time they
+ * finish a step. The amount of workers caps the cores used for decoding, no matter how many videos are playing.
+ * Workers that find nothing to do sleep until they are woken, so without playing videos they cost nothing.
+ */
+class DecodeScheduler {
+public:
+    static DecodeScheduler* getInstance();
+
+    /**
+     * @brief add Starts running steps of the given task.
+     */
+    void add(DecodeTask* task);
+
+    /**
+     * @brief remove Stops running steps of the given task. Waits for a step that is running to finish.
+     */
+    void remove(DecodeTask* task);
+
+    /**
+     * @brief waitUntilIdle Waits until no step of the given task is running. The task should make sure no new step
+     * starts, by returning false from needsDecoding.
+     */
+    void waitUntilIdle(DecodeTask* task);
+
+    /**
+     * @brief wake Should be called when a task may need decoding again. Never takes a lock, so it can be called from
+     * the render thread, and only wakes a worker when one is idle.
+     */
+    void wake();
+
+    /**
+     * @brief setMaxWorkers Sets the amount of workers that may decode at the same time. Workers are started when
+     * needed, and surplus workers stay idle.
+     */
+    void setMaxWorkers(int maxWorkers);
+    int getMaxWorkers();
+private:
+    class Worker : public Thread {
+    public:
+        Worker(DecodeScheduler* scheduler, int index);
+        virtual void run();
+    private:
+        DecodeScheduler* scheduler;
+        int index;
+    };
+
+    DecodeScheduler();
+
+    void runWorker(int index);
+    DecodeTask* pickTask();
+    void startWorkers();
+    void wakeAll();
+
+    Mutex mutex;
+    //Posted by wake, which may not take the mutex
+    Semaphore workAvailable;
+    //The workers that are looking for work or waiting for it, changed atomically
+    int idleWorkers;
+    CondVar stepFinished;
+    CondVar maxWorkersChanged;
+    std::vector<DecodeTask*> tasks;
+    std::vector<Worker*> workers;
+    int maxWorkers;
+};
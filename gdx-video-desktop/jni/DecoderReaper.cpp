@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#include "DecoderReaper.hpp"
+#include "VideoDecoder.h"
+#include "Utilities.h"
+
+DecoderReaper* DecoderReaper::getInstance() {
+    //Created on first use and never deleted, like the decode scheduler
+    static DecoderReaper* instance = new DecoderReaper();
+    return instance;
+}
+
+DecoderReaper::DecoderReaper() : decoderAdded(mutex) {
+    started = false;
+}
+
+void DecoderReaper::add(VideoDecoder* decoder) {
+    mutex.lock();
+    if(!started) {
+        started = start();
+    }
+    if(!started) {
+        //Without a thread to hand it to, the decoder can only be deleted right here
+        mutex.unlock();
+        logError("[DecoderReaper::add] Could not start the reaper thread, deleting the decoder directly\n");
+        delete decoder;
+        return;
+    }
+    decoders.push_back(decoder);
+    decoderAdded.signal();
+    mutex.unlock();
+}
+
+void DecoderReaper::run() {
+    mutex.lock();
+    while(true) {
+        while(decoders.empty()) {
+            decoderAdded.wait();
+        }
+        VideoDecoder* decoder = decoders.front();
+        decoders.pop_front();
+
+        mutex.unlock();
+        delete decoder;
+        mutex.lock();
+    }
+}
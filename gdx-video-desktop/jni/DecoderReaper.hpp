@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+#include <deque>
+
+#include "Thread.hpp"
+#include "Mutex.hpp"
+#include "CondVar.hpp"
+
+class VideoDecoder;
+
+/**
+ * @brief The DecoderReaper class deletes decoders on a background thread. Deleting a decoder waits for its decoding
+ * step and its audio thread to end, and closes the codecs, which join their own threads. None of that should happen on
+ * the render thread.
+ */
+class DecoderReaper : public Thread {
+public:
+    static DecoderReaper* getInstance();
+
+    /**
+     * @brief add Hands over the decoder, which is deleted as soon as the reaper gets to it. The decoder should already
+     * be stopped with VideoDecoder::stop, so it no longer decodes while it waits.
+     */
+    void add(VideoDecoder* decoder);
+
+    virtual void run();
+private:
+    DecoderReaper();
+
+    Mutex mutex;
+    CondVar decoderAdded;
+    std::deque<VideoDecoder*> decoders;
+    bool started;
+};
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+extern "C"
+{
+#ifndef __STDC_CONSTANT_MACROS
+#define __STDC_CONSTANT_MACROS
+#endif
+#include <libavcodec/avcodec.h>
+}
+
+/**
+ * @brief The PacketQueue class is a bounded queue of demuxed packets for one pushing and one popping thread, which
+ * never blocks either of them. All packet slots are allocated up front, so queueing a packet never allocates. The
+ * positions are published the same way as in RingBuffer.
+ */
+class PacketQueue {
+public:
+    PacketQueue() {
+        packets = NULL;
+        capacity = 0;
+        readPosition = 0;
+        writePosition = 0;
+    }
+    virtual ~PacketQueue() {
+        if(packets != NULL) {
+            clear();
+            delete[] packets;
+        }
+    }
+
+    /**
+     * @brief allocate Allocates the packet slots. Not thread safe, should be called before either thread uses the
+     * queue.
+     * @param minCapacity The minimal amount of packets the queue should hold. Rounded up to a power of two.
+     */
+    void allocate(unsigned int minCapacity) {
+        if(packets != NULL) {
+            clear();
+            delete[] packets;
+        }
+        capacity = 1;
+        while(capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        packets = new AVPacket[capacity];
+        readPosition = 0;
+        writePosition = 0;
+    }
+
+    /**
+     * @brief clear Frees all queued packets. Not thread safe, neither thread should use the queue at that moment.
+     */
+    void clear() {
+        while(readPosition != writePosition) {
+            av_free_packet(packets + (readPosition & (capacity - 1)));
+            readPosition++;
+        }
+    }
+
+    /**
+     * @brief push Should only be called by the pushing thread.
+     * @return Whether the packet was queued. When the queue is full, the packet is left untouched.
+     */
+    bool push(const AVPacket& packet) {
+        if(writePosition - __atomic_load_n(&readPosition, __ATOMIC_ACQUIRE) >= capacity) {
+            return false;
+        }
+        packets[writePosition & (capacity - 1)] = packet;
+        __atomic_store_n(&writePosition, writePosition + 1, __ATOMIC_RELEASE);
+        return true;
+    }
+
+    /**
+     * @brief isFull Can be called from any thread. The result may be outdated right away.
+     */
+    bool isFull() {
+        return __atomic_load_n(&writePosition, __ATOMIC_ACQUIRE) - __atomic_load_n(&readPosition, __ATOMIC_ACQUIRE) >= capacity;
+    }
+
+    /**
+     * @brief isEmpty Can be called from any thread. The result may be outdated right away.
+     */
+    bool isEmpty() {
+        return __atomic_load_n(&writePosition, __ATOMIC_ACQUIRE) == __atomic_load_n(&readPosition, __ATOMIC_ACQUIRE);
+    }
+
+    /**
+     * @brief pop Should only be called by the popping thread. The popped packet is owned by the caller.
+     * @return Whether a packet was available.
+     */
+    bool pop(AVPacket* packet) {
+        if(__atomic_load_n(&writePosition, __ATOMIC_ACQUIRE) == readPosition) {
+            return false;
+        }
+        *packet = packets[readPosition & (capacity - 1)];
+        __atomic_store_n(&readPosition, readPosition + 1, __ATOMIC_RELEASE);
+        return true;
+    }
+
+private:
+    AVPacket* packets;
+    unsigned int capacity;
+    unsigned int readPosition;
+    unsigned int writePosition;
+};
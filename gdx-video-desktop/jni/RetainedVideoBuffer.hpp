@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+#include <sys/types.h>
+
+#include "Mutex.hpp"
+#include "CondVar.hpp"
+
+/**
+ * @brief The RetainedVideoBuffer class hands the frame buffer of a decoder that is being deleted over to the next
+ * decoder. Which memory that is, is only certain once the old decoder stopped decoding, which it does on the reaper
+ * thread. So the render thread gets this handle right away, the old decoder fills it in when it is deleted, and the
+ * next decoder takes the memory out on the thread that loads it. The handle deletes itself once both sides are done.
+ */
+class RetainedVideoBuffer {
+public:
+    RetainedVideoBuffer() : filledConditional(mutex) {
+        buffer = NULL;
+        size = 0;
+        filled = false;
+        released = false;
+    }
+
+    /**
+     * @brief fill Called by the old decoder once nothing writes into the memory anymore. The handle may be deleted by
+     * this call, so it should not be used afterwards.
+     * @param buffer Memory that was allocated with new[], or NULL when the decoder had none.
+     * @param size The size of the memory in bytes.
+     */
+    void fill(u_int8_t* buffer, int size) {
+        mutex.lock();
+        if(released) {
+            //Nobody wants the memory anymore
+            mutex.unlock();
+            delete[] buffer;
+            delete this;
+            return;
+        }
+        this->buffer = buffer;
+        this->size = size;
+        filled = true;
+        filledConditional.broadcast();
+        mutex.unlock();
+    }
+
+    /**
+     * @brief take Waits until the old decoder is done with the memory, and takes it out. Deletes the handle.
+     * @param size Set to the size of the memory in bytes.
+     * @return The memory, which the caller owns from now on, or NULL.
+     */
+    u_int8_t* take(int* size) {
+        mutex.lock();
+        while(!filled) {
+            filledConditional.wait();
+        }
+        u_int8_t* result = buffer;
+        *size = this->size;
+        mutex.unlock();
+        delete this;
+        return result;
+    }
+
+    /**
+     * @brief release Gives up the memory without waiting for the old decoder. The memory is freed right away when it
+     * was filled in already, or else once it is. The handle should not be used afterwards.
+     */
+    void release() {
+        mutex.lock();
+        if(!filled) {
+            released = true;
+            mutex.unlock();
+            return;
+        }
+        mutex.unlock();
+        delete[] buffer;
+        delete this;
+    }
+
+private:
+    //Only deleted by itself
+    ~RetainedVideoBuffer() {
+    }
+
+    Mutex mutex;
+    CondVar filledConditional;
+    u_int8_t* buffer;
+    int size;
+    bool filled;
+    bool released;
+};
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+#include <string.h>
+
+/**
+ * @brief The RingBuffer class is a byte queue for exactly one writing and one reading thread, which never blocks
+ * either of them. The write position is only changed by the writer and the read position only by the reader. The
+ * positions are published with release semantics and read with acquire semantics, so the data is always visible
+ * before the position that covers it.
+ */
+class RingBuffer {
+public:
+    RingBuffer() {
+        buffer = NULL;
+        capacity = 0;
+        readPosition = 0;
+        writePosition = 0;
+    }
+    virtual ~RingBuffer() {
+        if(buffer != NULL) {
+            delete[] buffer;
+        }
+    }
+
+    /**
+     * @brief allocate Allocates the storage. Not thread safe, should be called before either thread uses the buffer.
+     * @param minCapacity The minimal amount of bytes the buffer should hold. Rounded up to a power of two.
+     */
+    void allocate(unsigned int minCapacity) {
+        if(buffer != NULL) {
+            delete[] buffer;
+        }
+        capacity = 1;
+        while(capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        buffer = new char[capacity];
+        readPosition = 0;
+        writePosition = 0;
+    }
+
+    /**
+     * @brief clear Empties the buffer. Not thread safe, neither thread should use the buffer at that moment.
+     */
+    void clear() {
+        readPosition = 0;
+        writePosition = 0;
+    }
+
+    unsigned int getCapacity() const {
+        return capacity;
+    }
+
+    /**
+     * @brief available Can be called by the reader.
+     * @return The amount of bytes that can be read.
+     */
+    unsigned int available() const {
+        return __atomic_load_n(&writePosition, __ATOMIC_ACQUIRE) - readPosition;
+    }
+
+    /**
+     * @brief space Can be called by the writer.
+     * @return The amount of bytes that can be written.
+     */
+    unsigned int space() const {
+        return capacity - (writePosition - __atomic_load_n(&readPosition, __ATOMIC_ACQUIRE));
+    }
+
+    /**
+     * @brief write Copies as much of the data into the buffer as fits. Should only be called by the writer.
+     * @return The amount of bytes written.
+     */
+    unsigned int write(const char* data, unsigned int size) {
+        unsigned int free = space();
+        if(size > free) {
+            size = free;
+        }
+        unsigned int offset = writePosition & (capacity - 1);
+        unsigned int firstPart = capacity - offset;
+        if(firstPart > size) {
+            firstPart = size;
+        }
+        memcpy(buffer + offset, data, firstPart);
+        memcpy(buffer, data + firstPart, size - firstPart);
+        __atomic_store_n(&writePosition, writePosition + size, __ATOMIC_RELEASE);
+        return size;
+    }
+
+    /**
+     * @brief read Copies as much of the requested data out of the buffer as is available. Should only be called by
+     * the reader.
+     * @return The amount of bytes read.
+     */
+    unsigned int read(char* data, unsigned int size) {
+        unsigned int filled = available();
+        if(size > filled) {
+            size = filled;
+        }
+        unsigned int offset = readPosition & (capacity - 1);
+        unsigned int firstPart = capacity - offset;
+        if(firstPart > size) {
+            firstPart = size;
+        }
+        memcpy(data, buffer + offset, firstPart);
+        memcpy(data + firstPart, buffer, size - firstPart);
+        __atomic_store_n(&readPosition, readPosition + size, __ATOMIC_RELEASE);
+        return size;
+    }
+
+private:
+    char* buffer;
+    unsigned int capacity;
+    //Ever increasing, wrapping around at the end of the integer range. Because the capacity is a power of two, the
+    //index into the buffer is the position masked with capacity - 1.
+    unsigned int readPosition;
+    unsigned int writePosition;
+};
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+#pragma once
+
+#ifdef __APPLE__
+#include <dispatch/dispatch.h>
+#else
+#include <errno.h>
+#include <semaphore.h>
+#endif
+
+/**
+ * @brief A c++ wrapper around an unnamed semaphore. Posting never takes a lock, so a thread that may not wait on
+ * anything can still wake another one. macOS has no unnamed POSIX semaphores, a dispatch semaphore is used there.
+ */
+class Semaphore {
+public:
+    Semaphore() {
+#ifdef __APPLE__
+        semaphore = dispatch_semaphore_create(0);
+#else
+        sem_init(&semaphore, 0, 0);
+#endif
+    }
+    virtual ~Semaphore() {
+#ifdef __APPLE__
+        dispatch_release(semaphore);
+#else
+        sem_destroy(&semaphore);
+#endif
+    }
+
+    void post() {
+#ifdef __APPLE__
+        dispatch_semaphore_signal(semaphore);
+#else
+        sem_post(&semaphore);
+#endif
+    }
+    void wait() {
+#ifdef __APPLE__
+        dispatch_semaphore_wait(semaphore, DISPATCH_TIME_FOREVER);
+#else
+        //Interrupted by a signal, not posted
+        while(sem_wait(&semaphore) != 0 && errno == EINTR) {
+        }
+#endif
+    }
+
+private:
+#ifdef __APPLE__
+    dispatch_semaphore_t semaphore;
+#else
+    sem_t semaphore;
+#endif
+};
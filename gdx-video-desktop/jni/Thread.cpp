@@ -24,12 +24,13 @@ static void* runThread(void* arg) {
 
 Thread::Thread() {
     threadId = 0;
+    started = false;
     running = false;
     detached = false;
 }
 
 Thread::~Thread() {
-    if (running && !detached) {
+    if (started && !detached) {
         pthread_detach(threadId);
     }
     if (running) {
@@ -40,6 +41,7 @@ Thread::~Thread() {
 bool Thread::start() {
     int result = pthread_create(&threadId, NULL, runThread, this);
     if (result == 0) {
+        started = true;
         running = true;
     }
     return result == 0;
@@ -47,7 +49,7 @@ bool Thread::start() {
 
 bool Thread::detach() {
     int result = -1;
-    if (running && !detached) {
+    if (started && !detached) {
         result = pthread_detach(threadId);
         if (result == 0) {
             detached = true;
@@ -58,7 +60,8 @@ bool Thread::detach() {
 
 bool Thread::join() {
     int result = -1;
-    if (running && !detached) {
+    //A thread that already finished still needs to be joined, to release its resources.
+    if (started && !detached) {
         result = pthread_join(threadId, NULL);
         if (result == 0) {
             detached = true;
@@ -41,6 +41,7 @@ public:
 
 private:
 	pthread_t threadId;
+	bool started;
 	bool running;
 	bool detached;
 };
@@ -50,6 +50,14 @@ msec_t currentTimeMillis() {
     return (msec_t)tv.tv_sec * 1000 + tv.tv_usec / 1000;
 }
 
+void timeoutFromNow(timespec* timeout, int millis) {
+    struct timeval tv;
+    gettimeofday(&tv, NULL);
+    long long nanos = (long long)tv.tv_usec * 1000 + (long long)millis * 1000000;
+    timeout->tv_sec = tv.tv_sec + (time_t)(nanos / 1000000000);
+    timeout->tv_nsec = (long)(nanos % 1000000000);
+}
+
 void debug(bool debug) {
     debugLoggingActive = debug;
 }
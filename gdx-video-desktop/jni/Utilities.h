@@ -59,3 +59,8 @@ T* getClassPointer(JNIEnv* env, jobject object) {
 
 typedef long long msec_t;
 msec_t currentTimeMillis();
+
+/**
+ * Fills in the absolute time that lies the given amount of milliseconds from now, as used by CondVar::wait.
+ */
+void timeoutFromNow(timespec* timeout, int millis);
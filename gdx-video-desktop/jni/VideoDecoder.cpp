@@ -17,6 +17,7 @@
 
 #include "VideoDecoder.h"
 
+#include <algorithm>
 #include <cstring>
 #include <stdexcept>
 
@@ -30,7 +31,31 @@ static int readFunction(void* opaque, uint8_t* buffer, int bufferSize)
     return decoder->getFillFileBufferFunc()(decoder->getCustomFileBufferFuncData(), buffer, bufferSize);
 }
 
-VideoDecoder::VideoDecoder() : videoBufferMutex(true), videoBufferConditional(videoBufferMutex), listMutex(true){
+static int64_t seekFunction(void* opaque, int64_t offset, int whence)
+{
+    VideoDecoder* decoder = (VideoDecoder*) opaque;
+
+    //Call implemented function
+    return decoder->getSeekFileBufferFunc()(decoder->getCustomFileBufferFuncData(), offset, whence & ~AVSEEK_FORCE);
+}
+
+//Times that are shared between threads are stored as microseconds, so they can be accessed atomically
+static int64_t toMicros(double seconds) {
+    return (int64_t)(seconds * 1000000.0);
+}
+
+static double toSeconds(int64_t micros) {
+    return (double)micros / 1000000.0;
+}
+
+AudioThread::AudioThread(VideoDecoder* decoder) : decoder(decoder) {
+}
+
+void AudioThread::run() {
+    decoder->runAudio();
+}
+
+VideoDecoder::VideoDecoder() : videoBufferConditional(videoBufferMutex), audioThread(this), audioThreadConditional(audioThreadMutex), packetQueueConditional(packetQueueMutex){
     fileLoaded = false;
     videoOutputEnded = false;
 
@@ -39,29 +64,115 @@ VideoDecoder::VideoDecoder() : videoBufferMutex(true), videoBufferConditional(vi
     audioCodecContext = NULL;
     avioContext = NULL;
     avioBuffer = NULL;
+    customFileBufferFuncData = NULL;
+    fillFileBufferFunc = NULL;
+    seekFileBufferFunc = NULL;
+    cleanupFunc = NULL;
 
     videoCodec = NULL;
     audioCodec = NULL;
     swsContext = NULL;
+    swrContext = NULL;
     videoBuffer = NULL;
+    videoBufferSize = 0;
+    videoBufferCapacity = 0;
+    videoBufferRetainer = NULL;
+    reusableVideoBuffer = NULL;
+    reusableVideoBufferSize = 0;
+    memset(&shownVideoOutput, 0, sizeof(VideoBufferInfo));
+    memset(&pendingVideoOutput, 0, sizeof(VideoBufferInfo));
+    videoOutputSwitchCount = 0;
+    videoOutputSwitchPending = false;
+    outputSizeRequested = false;
+    videoTimestamps = NULL;
+    outputFrames = NULL;
+    audioBuffer = NULL;
+    requestedOutputWidth = 0;
+    requestedOutputHeight = 0;
+    requestedCropX = 0;
+    requestedCropY = 0;
+    requestedCropWidth = 0;
+    requestedCropHeight = 0;
+    videoCropX = 0;
+    videoCropY = 0;
+    videoCropWidth = 0;
+    videoCropHeight = 0;
+    videoOutputWidth = 0;
+    videoOutputHeight = 0;
+    numBufferedFrames = VIDEOPLAYER_DEFAULT_NUM_BUFFERED_FRAMES;
+    audioBufferSize = VIDEOPLAYER_DEFAULT_AUDIO_BUFFER_SIZE;
+    ioBufferSize = VIDEOPLAYER_DEFAULT_IO_BUFFER_SIZE;
+    numDecodeThreads = VIDEOPLAYER_DEFAULT_NUM_DECODE_THREADS;
+    numQueuedPackets = VIDEOPLAYER_DEFAULT_NUM_QUEUED_PACKETS;
+    hasPendingPacket = false;
+    looping = false;
+    videoLoopMarkerPending = false;
+    audioLoopMarkerPending = false;
+    loopDuration = 0;
+    demuxedEnd = 0;
+    videoLoopOffset = 0;
+    videoLoopDraining = false;
+    videoWaitingForPackets = false;
+    numFramesDecoded = 0;
+    presentationTimeMicros = -1;
+    lastDecodedTimeMicros = 0;
+    frameSkipLevel = 0;
+    audioLoopOffset = 0;
     frame = av_frame_alloc();
-    for(int i = 0; i < VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES; i++) {
-        rgbFrames[i] = av_frame_alloc();
-    }
     audioFrame = av_frame_alloc();
     audioDecodedSize = 0;
     audioDecodedUsed = 0;
+    audioThreadStopped = false;
+    videoThreadStopped = false;
+    audioRingBufferFilled = false;
+    audioDecodingEnded = false;
+    audioTimeBase = 0;
+    audioDecodedTimestamp = 0;
+    audioSkipUntil = -1;
+    videoSkipUntil = -1;
+    seekRequested = false;
+    audioThreadParked = false;
+    scheduled = false;
+    decodePriority = 0;
+    videoStreamIndex = -1;
+    audioStreamIndex = -1;
+    foundAudioStreamIndex = -1;
+    audioEnabled = true;
 
-    videoCurrentBufferIndex = 0;
-    videoNumFrameBuffered = 0;
-    timestampOffset = -1;
+    videoReadCount = 0;
+    videoWriteCount = 0;
+    shownFrameIndex = 0;
 }
 
-VideoDecoder::~VideoDecoder() {
-
+void VideoDecoder::stop() {
+    //Decoding no longer ends by itself at the end of the stream, since a seek can always move back
+    videoBufferMutex.lock();
+    __atomic_store_n(&videoThreadStopped, true, __ATOMIC_RELEASE);
+    videoBufferConditional.broadcast();
+    videoBufferMutex.unlock();
+    audioThreadMutex.lock();
+    audioThreadStopped = true;
+    audioThreadConditional.broadcast();
+    audioThreadMutex.unlock();
+    //Wake up a step that waits for room in the packet queues, so it sees the stop right away
+    packetQueueMutex.lock();
+    packetQueueConditional.broadcast();
+    packetQueueMutex.unlock();
+}
 
+VideoDecoder::~VideoDecoder() {
+    //Stop decoding before anything it uses is cleaned up
+    stop();
+    if(scheduled) {
+        DecodeScheduler::getInstance()->remove(this);
+    }
+    audioThread.join();
 
     //Take care of cleanup
+    if(hasPendingPacket) {
+        av_free_packet(&pendingPacket);
+    }
+
     if(swrContext !=  NULL) {
         swr_free(&swrContext);
     }
@@ -70,9 +181,25 @@ VideoDecoder::~VideoDecoder() {
         sws_freeContext(swsContext);
     }
 
-    if(videoBuffer != NULL) {
+    if(shownVideoOutput.videoBuffer != NULL && shownVideoOutput.videoBuffer != videoBuffer) {
+        //The frames of an old size that were not all shown
+        delete[] (u_int8_t*)shownVideoOutput.videoBuffer;
+    }
+    if(videoBufferRetainer != NULL) {
+        //Nothing writes into the frame buffer anymore, so the next decoder may have it
+        videoBufferRetainer->fill(videoBuffer, videoBufferCapacity);
+    } else if(videoBuffer != NULL) {
         delete[] videoBuffer;
     }
+    if(reusableVideoBuffer != NULL) {
+        delete[] reusableVideoBuffer;
+    }
+    if(videoTimestamps != NULL) {
+        delete[] videoTimestamps;
+    }
+    if(audioBuffer != NULL) {
+        delete[] audioBuffer;
+    }
 
     if(audioCodecContext != NULL) {
         avcodec_close(audioCodecContext);
@@ -82,8 +209,11 @@ VideoDecoder::~VideoDecoder() {
     }
 
     av_frame_free(&audioFrame);
-    for(int i = 0; i < VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES; i++) {
-        av_frame_free(rgbFrames + i);
+    if(outputFrames != NULL) {
+        for(int i = 0; i < numBufferedFrames; i++) {
+            av_frame_free(outputFrames + i);
+        }
+        delete[] outputFrames;
     }
     av_frame_free(&frame);
     avformat_close_input(&formatContext);
@@ -91,9 +221,13 @@ VideoDecoder::~VideoDecoder() {
     if(avioContext != NULL) {
         av_free(avioContext);
     }
+
+    if(cleanupFunc != NULL) {
+        cleanupFunc(this->customFileBufferFuncData);
+    }
 }
 
-void VideoDecoder::loadFile(char* filename, VideoBufferInfo *bufferInfo) {
+void VideoDecoder::loadFile(char* filename, int pixelFormat, const VideoDecoderConfig* config, VideoBufferInfo *bufferInfo) {
     if(fileLoaded) {
         logError("[VideoPlayer::loadFile] Tried to load a new file. Ignoring...\n");
         return;
@@ -102,13 +236,9 @@ void VideoDecoder::loadFile(char* filename, VideoBufferInfo *bufferInfo) {
         logError("[VideoPlayer::loadFile] Invalid arguments supplied!\n");
         throw std::invalid_argument("Filename should not be empty!");
     }
+    applyConfig(config);
 
-    if(debugLoggingActive) {
-        //Print all available information about the streams inside of the file.
-        av_dump_format(formatContext, 0, filename, 0);
-    }
-
-    //Try to open the file
+    //Try to open the file, FFmpeg reads and seeks it by itself
     int err = avformat_open_input(&formatContext, filename, NULL, NULL);
     if(err < 0) {
         char error[1024];
@@ -116,10 +246,15 @@ void VideoDecoder::loadFile(char* filename, VideoBufferInfo *bufferInfo) {
         logError("[VideoPlayer::loadFile] Error opening file (%s): %s\n", filename, error);
         throw std::runtime_error("Could not open file!");
     }
-    loadContainer(bufferInfo);
+
+    if(debugLoggingActive) {
+        //Print all available information about the streams inside of the file.
+        av_dump_format(formatContext, 0, filename, 0);
+    }
+    loadContainer(pixelFormat, bufferInfo);
 }
 
-void VideoDecoder::loadFile(FillFileBufferFunc func, void* funcData, CleanupFunc cleanupFunc, VideoBufferInfo* bufferInfo) {
+void VideoDecoder::loadFile(FillFileBufferFunc func, SeekFileBufferFunc seekFunc, void* funcData, CleanupFunc cleanupFunc, int pixelFormat, const VideoDecoderConfig* config, VideoBufferInfo* bufferInfo) {
     if(fileLoaded) {
         logError("[VideoPlayer::loadFile] Tried to load a new file. Ignoring...\n");
         return;
@@ -129,13 +264,15 @@ void VideoDecoder::loadFile(FillFileBufferFunc func, void* funcData, CleanupFunc
         logError("[VideoPlayer::loadFile] Invalid arguments supplied!\n");
         throw std::invalid_argument("FillFileBufferFunc should be a valid function");
     }
+    applyConfig(config);
 
     fillFileBufferFunc = func;
+    seekFileBufferFunc = seekFunc;
     customFileBufferFuncData = funcData;
     this->cleanupFunc = cleanupFunc;
 
-    avioBuffer = (u_int8_t*)av_malloc(CUSTOMIO_BUFFER_SIZE);
-    avioContext = avio_alloc_context(avioBuffer, CUSTOMIO_BUFFER_SIZE, 0, (void*)this, &readFunction, NULL, NULL);
+    avioBuffer = (u_int8_t*)av_malloc(ioBufferSize);
+    avioContext = avio_alloc_context(avioBuffer, ioBufferSize, 0, (void*)this, &readFunction, NULL, seekFunc != NULL ? &seekFunction : NULL);
 
     formatContext = avformat_alloc_context();
     formatContext->pb = avioContext;
@@ -146,10 +283,38 @@ void VideoDecoder::loadFile(FillFileBufferFunc func, void* funcData, CleanupFunc
         logError("[VideoPlayer::loadFile] Error opening file: %s\n", error);
         throw std::runtime_error("Could not open file!");
     }
-    loadContainer(bufferInfo);
+    loadContainer(pixelFormat, bufferInfo);
 }
 
-void VideoDecoder::loadContainer(VideoBufferInfo* bufferInfo) {
+void VideoDecoder::applyConfig(const VideoDecoderConfig* config) {
+    if(config == NULL) {
+        return;
+    }
+    if(config->numBufferedFrames < 2) {
+        logError("[VideoPlayer::loadFile] Invalid amount of buffered frames: %d\n", config->numBufferedFrames);
+        throw std::invalid_argument("At least 2 frames should be buffered!");
+    }
+    if(config->audioBufferSize < 4 || config->ioBufferSize <= 0) {
+        logError("[VideoPlayer::loadFile] Invalid buffer sizes: audio %d, io %d\n", config->audioBufferSize, config->ioBufferSize);
+        throw std::invalid_argument("Buffer sizes should be positive!");
+    }
+    if(config->numQueuedPackets < 1) {
+        logError("[VideoPlayer::loadFile] Invalid amount of queued packets: %d\n", config->numQueuedPackets);
+        throw std::invalid_argument("At least 1 packet should be queued!");
+    }
+    if(config->numDecodeThreads < 1) {
+        logError("[VideoPlayer::loadFile] Invalid amount of decode threads: %d\n", config->numDecodeThreads);
+        throw std::invalid_argument("At least 1 decode thread should be used!");
+    }
+    numBufferedFrames = config->numBufferedFrames;
+    //Whole samples only (16 bit stereo), so silence inserted on an underrun never shifts the channels.
+    audioBufferSize = config->audioBufferSize & ~3;
+    ioBufferSize = config->ioBufferSize;
+    numDecodeThreads = config->numDecodeThreads;
+    numQueuedPackets = config->numQueuedPackets;
+}
+
+void VideoDecoder::loadContainer(int pixelFormat, VideoBufferInfo* bufferInfo) {
     if (av_find_stream_info(formatContext) < 0) {
         logError("[VideoPlayer::loadFile] Could not find stream info!\n");
         throw std::runtime_error("Could not find stream info!");
@@ -180,11 +345,16 @@ void VideoDecoder::loadContainer(VideoBufferInfo* bufferInfo) {
         logDebug("[VideoPlayer::loadFile] video stream found [index=%d]\n", videoStreamIndex);
     }
 
+    foundAudioStreamIndex = audioStreamIndex;
     if(audioStreamIndex < 0) {
         logError("[VideoPlayer::loadFile] Could not find audio stream!\n");
+    } else if(!audioEnabled) {
+        logDebug("[VideoPlayer::loadFile] audio stream found [index=%d], but audio is disabled\n", audioStreamIndex);
+        audioStreamIndex = -1;
     } else {
         logDebug("[VideoPlayer::loadFile] audio stream found [index=%d]\n", audioStreamIndex);
     }
+    discardUnusedStreams();
 
     //Initialize video decoder
     videoCodecContext = formatContext->streams[videoStreamIndex]->codec;
@@ -200,162 +370,286 @@ void VideoDecoder::loadContainer(VideoBufferInfo* bufferInfo) {
 
     AVDictionary* codecOptions = NULL;
 
+    //Let the codec decode multiple frames, or multiple slices of a frame, in parallel. Codecs that support neither
+    //ignore this and decode on the calling thread.
+    videoCodecContext->thread_count = numDecodeThreads;
+    videoCodecContext->thread_type = FF_THREAD_FRAME | FF_THREAD_SLICE;
+
     if(avcodec_open2(videoCodecContext, videoCodec, &codecOptions) < 0) {
         logError("[VideoPlayer::loadFile] Could not open video decoder!\n");
         throw std::runtime_error("Could not open video decoder!");
     }
+    logDebug("[VideoPlayer::loadFile] video decoder uses %d threads [thread type=%d]\n", videoCodecContext->thread_count, videoCodecContext->active_thread_type);
 
     //Initialize audio decoder
     if(audioStreamIndex >= 0) {
-        audioCodecContext = formatContext->streams[audioStreamIndex]->codec;
-
-        bufferInfo->audioChannels = audioCodecContext->channels;
-        bufferInfo->audioSampleRate = audioCodecContext->sample_rate;
+        openAudio();
+    }
 
-        audioCodec = avcodec_find_decoder((audioCodecContext->codec_id));
-        if(audioCodec == NULL) {
-            logError("[VideoPlayer::loadFile] Could not find a suitable audio decoder!");
-            throw std::runtime_error("Could not find a suitable audio decoder!");
-        }
+    switch(pixelFormat) {
+    case VIDEOPLAYER_PIXEL_FORMAT_RGB24:
+        outputPixelFormat = PIX_FMT_RGB24;
+        break;
+    case VIDEOPLAYER_PIXEL_FORMAT_YUV420P:
+        outputPixelFormat = PIX_FMT_YUV420P;
+        break;
+    default:
+        logError("[VideoPlayer::loadFile] Unsupported output pixel format: %d\n", pixelFormat);
+        throw std::invalid_argument("Unsupported output pixel format!");
+    }
 
-        if(avcodec_open2(audioCodecContext, audioCodec, &codecOptions) < 0) {
-            logError("[VideoPlayer::loadFile] Could not open audio decoder!\n");
-            throw std::runtime_error("Could not open audio decoder!");
-        }
-        bufferInfo->audioBuffer = this->audioBuffer;
-        bufferInfo->audioBufferSize = VIDEOPLAYER_AUDIO_BUFFER_SIZE;
+    videoTimestamps = new double[numBufferedFrames];
+    memset(videoTimestamps, 0, sizeof(double) * numBufferedFrames);
+    sizeVideoOutput();
+    createVideoOutput();
+    describeVideoOutput(&shownVideoOutput);
+    fillBufferInfo(bufferInfo);
 
-        int channelLayout = 0;
-        switch(bufferInfo->audioChannels) {
-        case 1:
-            channelLayout = AV_CH_LAYOUT_MONO;
-            break;
-        case 2:
-            channelLayout = AV_CH_LAYOUT_STEREO;
-            break;
-        default:
-            logError("[VideoPlayer::loadFile] InputFile has unsupported number of audiochannels!");
-            throw std::runtime_error("InputFile has unsupported number of audiochannels!");
-        }
+    fileLoaded = true;
+    firstVideoPacket = true;
 
-        //Setup conversion context, which will convert our audio to the right output format
-        swrContext = swr_alloc_set_opts(NULL, AV_CH_LAYOUT_STEREO, AV_SAMPLE_FMT_S16, bufferInfo->audioSampleRate, channelLayout, AV_SAMPLE_FMT_FLTP, bufferInfo->audioSampleRate, 0, NULL);
-        swr_init(swrContext);
+    videoPackets.allocate(numQueuedPackets);
+    audioPackets.allocate(numQueuedPackets);
 
-        //Calculate how much seconds a single kb block is (1024 bytes): blockSize / bytesPerSample / channels / sampleRate
-        secPerKbBlock = 1024.0 / 1 / (double)audioCodecContext->channels / (double)audioCodecContext->sample_rate;
+    //start filling up the buffer (On the workers of the scheduler)
+    scheduled = true;
+    DecodeScheduler::getInstance()->add(this);
+    if(audioStreamIndex >= 0) {
+        audioThread.start();
     }
+    waitForBuffers();
+}
 
-    videoFrameSize = avpicture_get_size(PIX_FMT_RGB24, videoCodecContext->width, videoCodecContext->height);
-    logDebug("[VideoPlayer::loadFile] buffer for single frame is of size: %d\n", videoFrameSize);
-
-    videoBuffer = new u_int8_t[videoFrameSize * VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES];
-    swsContext = sws_getContext(videoCodecContext->width,
-                                videoCodecContext->height,
-                                videoCodecContext->pix_fmt,
-                                videoCodecContext->width,
-                                videoCodecContext->height,
-                                PIX_FMT_RGB24,
-                                SWS_BILINEAR,
-                                NULL,
-                                NULL,
-                                NULL);
+void VideoDecoder::waitForBuffers() {
+    videoBufferMutex.lock();
+    while(getNumBufferedVideoFrames() < (numBufferedFrames - 1) && !__atomic_load_n(&videoOutputEnded, __ATOMIC_ACQUIRE)) {
+        videoBufferConditional.wait();
+        logDebug("[VideoPlayer::waitForBuffers] Waiting for buffer to fill: %d\n", getNumBufferedVideoFrames());
+    }
+    videoBufferMutex.unlock();
 
-    for(int i = 0; i < VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES; i++) {
-        avpicture_fill((AVPicture *)rgbFrames[i], videoBuffer + (i * videoFrameSize), PIX_FMT_RGB24, videoCodecContext->width, videoCodecContext->height);
+    //Playback reads a lot of audio at once when it starts, make sure it is already there.
+    if(audioStreamIndex >= 0 && audioEnabled) {
+        audioThreadMutex.lock();
+        while(!audioRingBufferFilled && !audioDecodingEnded) {
+            audioThreadConditional.wait();
+        }
+        audioThreadMutex.unlock();
     }
-    bufferInfo->videoBuffer = rgbFrames[0]->data[0];
-    bufferInfo->videoBufferSize = videoFrameSize;
-    bufferInfo->videoWidth = videoCodecContext->width;
-    bufferInfo->videoHeight = videoCodecContext->height;
+}
 
-    fileLoaded = true;
-    firstVideoPacket = true;
+int VideoDecoder::getNumBufferedVideoFrames() {
+    //Unsigned, so the difference stays right when the counts wrap around
+    unsigned int written = __atomic_load_n(&videoWriteCount, __ATOMIC_ACQUIRE);
+    unsigned int read = __atomic_load_n(&videoReadCount, __ATOMIC_ACQUIRE);
+    return (int)(written - read);
+}
 
-    //start filling up the buffer (Start seperate thread)
-    this->start();
+void VideoDecoder::notifyBufferWaiters() {
     videoBufferMutex.lock();
-    while(videoNumFrameBuffered < (VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES - 1)) {
-        videoBufferConditional.wait();
-        logDebug("[VideoPlayer::loadFile] Waiting for buffer to fill: %d\n", videoNumFrameBuffered);
-    }
+    videoBufferConditional.broadcast();
     videoBufferMutex.unlock();
 }
 
-u_int8_t* VideoDecoder::nextVideoFrame() {
-    videoBufferMutex.lock();
+int VideoDecoder::nextVideoFrameIndex() {
+    //Only this thread advances the read count
+    unsigned int read = videoReadCount;
+    //Acquire, so the frame and its timestamp are complete once the write count says so
+    unsigned int written = __atomic_load_n(&videoWriteCount, __ATOMIC_ACQUIRE);
 
-    if(videoNumFrameBuffered < 1 && !videoOutputEnded) {
-        logDebug("[VideoPlayer::nextVideoFrame] no new frame available yet!\n");
-        return rgbFrames[videoCurrentBufferIndex]->data[0];
+    if(read == written) {
+        if(__atomic_load_n(&videoOutputEnded, __ATOMIC_ACQUIRE)) {
+            //The last frames may have been written right before the end was set
+            written = __atomic_load_n(&videoWriteCount, __ATOMIC_ACQUIRE);
+        }
+        if(read == written) {
+            if(__atomic_load_n(&videoOutputEnded, __ATOMIC_ACQUIRE)) {
+                return -1;
+            }
+            //The decoder is behind, the last frame stays on screen instead of waiting for it. Right after loading
+            //or seeking, there is no last frame, so no slot may be returned at all.
+            logDebug("[VideoPlayer::nextVideoFrameIndex] no new frame available yet!\n");
+            return VIDEOPLAYER_FRAME_UNCHANGED;
+        }
     }
 
-    if(!videoOutputEnded) {
-        int readingIndex = videoCurrentBufferIndex;
-        logDebug("[VideoPlayer::nextVideoFrame] last returned buffer points to index %d\n", readingIndex);
-        videoCurrentBufferIndex = (readingIndex + 1) % VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES;
-        videoNumFrameBuffered--;
-        videoBufferConditional.signal();
-        videoBufferMutex.unlock();
-        return rgbFrames[readingIndex]->data[0];
+    if(__atomic_load_n(&videoOutputSwitchPending, __ATOMIC_ACQUIRE) && read == videoOutputSwitchCount) {
+        //The frames of the old size are all shown, the caller has to take the new frame buffer first
+        return VIDEOPLAYER_FRAME_OUTPUT_CHANGED;
     }
 
-    videoBufferMutex.unlock();
-    return NULL;
+    int readingIndex = (int)(read % numBufferedFrames);
+    logDebug("[VideoPlayer::nextVideoFrameIndex] last returned buffer points to index %d\n", readingIndex);
+    shownFrameIndex = readingIndex;
+    //Release, the slot of the frame shown before this one may be overwritten from now on
+    __atomic_store_n(&videoReadCount, read + 1, __ATOMIC_RELEASE);
+    wakeIfBufferWasFull(read);
+    return readingIndex;
+}
+
+int VideoDecoder::dropLateVideoFrames(double playbackTime) {
+    __atomic_store_n(&presentationTimeMicros, toMicros(playbackTime), __ATOMIC_RELEASE);
+    unsigned int previousRead = videoReadCount;
+    unsigned int read = previousRead;
+    unsigned int written = __atomic_load_n(&videoWriteCount, __ATOMIC_ACQUIRE);
+    int numDropped = 0;
+    //The frame that nextVideoFrameIndex would return next is at the read count, drop it when the one after it is due
+    //as well.
+    while(written - read > 1 && videoTimestamps[(read + 1) % numBufferedFrames] <= playbackTime) {
+        read++;
+        numDropped++;
+    }
+    if(numDropped > 0) {
+        __atomic_store_n(&videoReadCount, read, __ATOMIC_RELEASE);
+        logDebug("[VideoPlayer::dropLateVideoFrames] Dropped %d late frames\n", numDropped);
+        wakeIfBufferWasFull(previousRead);
+    }
+    return numDropped;
+}
+
+void VideoDecoder::wakeIfBufferWasFull(unsigned int previousRead) {
+    //Pairs with the fence in DecodeScheduler::runWorker: either the worker that looks for work sees the room, or this
+    //sees the frame it wrote before it found the frame buffer full.
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
+    unsigned int written = __atomic_load_n(&videoWriteCount, __ATOMIC_ACQUIRE);
+    if(written - previousRead >= (unsigned int)(numBufferedFrames - 1)) {
+        //Decoding only stops at a full frame buffer, so only then it has to be woken
+        DecodeScheduler::getInstance()->wake();
+    }
 }
 
 void VideoDecoder::updateAudioBuffer() {
-    int sizeLeft = VIDEOPLAYER_AUDIO_BUFFER_SIZE;
+    readAudio(audioBuffer, audioBufferSize);
+}
+
+int VideoDecoder::readAudio(char* buffer, int bufferSize) {
+    //Only take whole samples, the rest of the buffer is filled with silence then.
+    int size = audioRingBuffer.available() & ~3;
+    if(size > bufferSize) {
+        size = bufferSize;
+    }
+    audioRingBuffer.read(buffer, size);
+
+    if(size < bufferSize) {
+        logDebug("[VideoPlayer::readAudio] Audio decoding could not keep up, playing silence!\n");
+
+        //Play silence, the caller leaves it out of its clock
+        memset(buffer + size, 0, bufferSize - size);
+    }
+    return bufferSize - size;
+}
+
+void VideoDecoder::runAudio() {
+    while(true) {
+        audioThreadMutex.lock();
+        if(isSeekRequested() && !audioThreadStopped) {
+            //Stay out of the way while a seek resets everything
+            audioThreadParked = true;
+            audioThreadConditional.broadcast();
+            while(isSeekRequested() && !audioThreadStopped) {
+                audioThreadConditional.wait();
+            }
+            audioThreadParked = false;
+        }
+        //Nothing left to decode, until a seek moves back or the audio is enabled again
+        while((audioDecodingEnded || !audioEnabled) && !isSeekRequested() && !audioThreadStopped) {
+            audioThreadConditional.wait();
+        }
+        bool stopped = audioThreadStopped;
+        bool idle = audioDecodingEnded || !audioEnabled || isSeekRequested();
+        audioThreadMutex.unlock();
+        if(stopped) {
+            return;
+        }
+        if(idle) {
+            continue;
+        }
 
-    // Try getting enough data, to fill the buffer.
-    while(sizeLeft > 0) {
         //If there is no decoded data left, decode new frame
         if(audioDecodedUsed >= audioDecodedSize) {
-            audioDecodedUsed = 0;
-
             int size = decodeAudio(audioDecodingBuffer);
+            if(size == -2) {
+                continue;
+            }
             if(size < 0) {
-                logDebug("[VideoPlayer::updateAudioBuffer] Could not decode more frames!\n");
-
-                //Play silence
-                audioDecodedSize = 1024;
-                memset(audioDecodingBuffer, 0, audioDecodedSize);
+                logDebug("[VideoPlayer::runAudio] Could not decode more frames!\n");
+                audioThreadMutex.lock();
+                audioDecodingEnded = true;
+                audioThreadConditional.broadcast();
+                audioThreadMutex.unlock();
+                continue;
+            }
+            audioDecodedSize = size;
+            audioDecodedUsed = 0;
 
-                //Set an offset for the video, so that audio won't be behind
-                timestampOffset += secPerKbBlock;
-            } else {
-                audioDecodedSize = size;
+            //Throw away the audio before the position of a seek
+            if(audioSkipUntil >= 0) {
+                double secondsToSkip = audioSkipUntil - audioDecodedTimestamp;
+                int sizeToSkip = secondsToSkip > 0 ? (int)(secondsToSkip * audioCodecContext->sample_rate) * 4 : 0;
+                if(sizeToSkip >= audioDecodedSize) {
+                    audioDecodedUsed = audioDecodedSize;
+                    continue;
+                }
+                audioDecodedUsed = sizeToSkip;
+                audioSkipUntil = -1;
             }
         }
 
-        //Copy data into the buffer
-        int lengthToCopy = audioDecodedSize - audioDecodedUsed;
-        //Make sure we never copy more than the buffer
-        if(lengthToCopy > sizeLeft) {
-            lengthToCopy = sizeLeft;
+        audioDecodedUsed += audioRingBuffer.write(audioDecodingBuffer + audioDecodedUsed, audioDecodedSize - audioDecodedUsed);
+
+        if(audioDecodedUsed < audioDecodedSize) {
+            //Ring buffer is full, give playback some time to make room. It does not notify us, so playback never
+            //has to take a lock.
+            audioThreadMutex.lock();
+            audioRingBufferFilled = true;
+            audioThreadConditional.broadcast();
+            if(!audioThreadStopped && !isSeekRequested()) {
+                timespec timeout;
+                timeoutFromNow(&timeout, VIDEOPLAYER_AUDIO_THREAD_WAIT_MILLIS);
+                audioThreadConditional.wait(&timeout);
+            }
+            audioThreadMutex.unlock();
         }
-
-        memcpy(audioBuffer + (VIDEOPLAYER_AUDIO_BUFFER_SIZE - sizeLeft), audioDecodingBuffer + audioDecodedUsed, lengthToCopy);
-        sizeLeft -= lengthToCopy;
-        audioDecodedUsed += lengthToCopy;
     }
 }
 
 int VideoDecoder::decodeAudio(void* audioBuffer) {
     while(true) {
-        listMutex.lock();
-        if(audioPackets.empty()) {
-            //Keep reading packets until no more can be read, or an audio packet is found.
-            while(audioPackets.empty() && readPacket());
-            if(audioPackets.empty()) {
-                listMutex.unlock();
-                return -1;
+        //Keep reading packets until no more can be read, or an audio packet is found.
+        AVPacket packet;
+        while(!audioPackets.pop(&packet)) {
+            ReadPacketResult result = readPacket();
+            //The packet may have been a video packet, which the video decoding may be waiting for
+            notifyPacketsAvailable();
+            if(result == PACKET_END_OF_STREAM) {
+                if(!audioPackets.pop(&packet)) {
+                    return -1;
+                }
+                break;
+            } else if(result == PACKET_QUEUE_FULL) {
+                //The demuxer can't get further ahead until the video catches up, so this is as filled as it gets
+                audioThreadMutex.lock();
+                bool interrupted = audioThreadStopped || isSeekRequested();
+                audioRingBufferFilled = true;
+                audioThreadConditional.broadcast();
+                audioThreadMutex.unlock();
+                if(interrupted) {
+                    return -2;
+                }
+                waitForPacketQueues();
             }
         }
 
-        AVPacket packet = audioPackets.back();
-        audioPackets.pop_back();
-        listMutex.unlock();
+        //There is room for the packet the video decoding may be waiting for
+        notifyPacketsAvailable();
+
+        if(isLoopMarker(packet)) {
+            //The next packets belong to the next loop, their audio directly follows the audio of this one
+            avcodec_flush_buffers(audioCodecContext);
+            audioLoopOffset += loopDuration;
+            continue;
+        }
+
         int audioPacketSize = packet.size;
 
         //While we did not read the full packet size (can be split over multiple frames)
@@ -370,6 +664,14 @@ int VideoDecoder::decodeAudio(void* audioBuffer) {
             audioPacketSize -= decodedSize;
 
             if(gotFrame) {
+                int64_t framePts = av_frame_get_best_effort_timestamp(audioFrame);
+                if(framePts != AV_NOPTS_VALUE) {
+                    audioDecodedTimestamp = audioTimeBase * (double)framePts + audioLoopOffset;
+                } else {
+                    //Continue from the previously decoded audio
+                    audioDecodedTimestamp += (double)audioDecodedSize / 4 / audioCodecContext->sample_rate;
+                }
+
                 int size = av_samples_get_buffer_size(NULL, audioCodecContext->channels, audioFrame->nb_samples, audioCodecContext->sample_fmt, 0);
                 int ret = 0;
                 if(size > 0) {
@@ -389,100 +691,711 @@ int VideoDecoder::decodeAudio(void* audioBuffer) {
 }
 
 double VideoDecoder::getCurrentFrameTimestamp() {
-    //Since the nextVideoFrame function already upped the variable, undo the effect (ugly, but effective, may be refactored later).
-    int index = videoCurrentBufferIndex - 1;
-    if(index < 0) {
-        index = VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES - 1;
-    }
-    logDebug("[VideoPlayer::nextVideoFrame] last returned timestamp is of index %d\n", index);
-    return videoTimestamps[index];// + ((timestampOffset) > 0 ? timestampOffset : 0);
-}
-
-bool VideoDecoder::readPacket() {
-    AVPacket packet;
-    if(av_read_frame(formatContext, &packet) >= 0) {
-        if(packet.stream_index==videoStreamIndex) {
-            //queue video packet for handling later
-            videoBufferMutex.lock();
-            videoPackets.push_front(packet);
-            videoBufferMutex.unlock();
-        } else if(packet.stream_index == audioStreamIndex) {
-            //queue audio packet for handling later
-            listMutex.lock();
-            audioPackets.push_front(packet);
-            listMutex.unlock();
-        } else {
-            av_free_packet(&packet);
+    //Not derived from the read count, which is 0 right after a seek, and wraps around to a different slot when the
+    //amount of frames is not a power of two
+    logDebug("[VideoPlayer::nextVideoFrame] last returned timestamp is of index %d\n", shownFrameIndex);
+    return videoTimestamps[shownFrameIndex];
+}
+
+VideoDecoder::ReadPacketResult VideoDecoder::readPacket() {
+    //Both the video and the audio thread read packets, so reading and queueing are done under the same lock. This
+    //makes it a single producer for both queues. The lock is never held while waiting on anything else, so the
+    //threads can't deadlock on each other.
+    demuxMutex.lock();
+    //The markers of a loop go before the packets of the next loop
+    if(!pushLoopMarkers()) {
+        demuxMutex.unlock();
+        return PACKET_QUEUE_FULL;
+    }
+    if(!hasPendingPacket) {
+        if(av_read_frame(formatContext, &pendingPacket) < 0) {
+            ReadPacketResult result = PACKET_END_OF_STREAM;
+            if(__atomic_load_n(&looping, __ATOMIC_ACQUIRE) && rewindForLoop()) {
+                result = pushLoopMarkers() ? PACKET_READ : PACKET_QUEUE_FULL;
+            }
+            demuxMutex.unlock();
+            return result;
+        }
+        bool decodedAudio = pendingPacket.stream_index == audioStreamIndex && audioEnabled;
+        if(pendingPacket.stream_index != videoStreamIndex && !decodedAudio) {
+            av_free_packet(&pendingPacket);
+            demuxMutex.unlock();
+            return PACKET_READ;
+        }
+        //Remember where the demuxed streams end, which is where the next loop starts
+        if(pendingPacket.pts != AV_NOPTS_VALUE) {
+            double packetTimeBase = pendingPacket.stream_index == videoStreamIndex ? timeBase : audioTimeBase;
+            double packetEnd = packetTimeBase * (double)(pendingPacket.pts + pendingPacket.duration);
+            if(packetEnd > demuxedEnd) {
+                demuxedEnd = packetEnd;
+            }
         }
+        //The demuxer may reuse the data of packets it does not own, so make sure the queued packet does.
+        av_dup_packet(&pendingPacket);
+        hasPendingPacket = true;
+    }
+
+    //queue packet for handling later
+    PacketQueue& queue = pendingPacket.stream_index == videoStreamIndex ? videoPackets : audioPackets;
+    if(queue.push(pendingPacket)) {
+        hasPendingPacket = false;
+    }
+    ReadPacketResult result = hasPendingPacket ? PACKET_QUEUE_FULL : PACKET_READ;
+    demuxMutex.unlock();
+    return result;
+}
+
+bool VideoDecoder::rewindForLoop() {
+    int64_t startTimestamp = formatContext->start_time != AV_NOPTS_VALUE ? formatContext->start_time : 0;
+    int err = av_seek_frame(formatContext, -1, startTimestamp, AVSEEK_FLAG_BACKWARD);
+    if(err < 0) {
+        char error[1024];
+        av_strerror(err, error, 1024);
+        logError("[VideoPlayer::rewindForLoop] Could not rewind the file, ending playback: %s\n", error);
+        return false;
+    }
+
+    double start = (double)startTimestamp / AV_TIME_BASE;
+    if(demuxedEnd > start) {
+        loopDuration = demuxedEnd - start;
+    } else if(formatContext->duration != AV_NOPTS_VALUE) {
+        loopDuration = (double)formatContext->duration / AV_TIME_BASE;
+    }
+    logDebug("[VideoPlayer::rewindForLoop] Rewound the file, a loop takes %f seconds\n", loopDuration);
+
+    videoLoopMarkerPending = true;
+    audioLoopMarkerPending = audioStreamIndex >= 0 && audioEnabled;
+    return true;
+}
+
+bool VideoDecoder::pushLoopMarkers() {
+    AVPacket marker;
+    av_init_packet(&marker);
+    marker.data = NULL;
+    marker.size = 0;
+    marker.stream_index = -1;
+    if(videoLoopMarkerPending && videoPackets.push(marker)) {
+        videoLoopMarkerPending = false;
+    }
+    if(audioLoopMarkerPending && audioPackets.push(marker)) {
+        audioLoopMarkerPending = false;
+    }
+    return !videoLoopMarkerPending && !audioLoopMarkerPending;
+}
+
+bool VideoDecoder::isLoopMarker(const AVPacket& packet) {
+    return packet.stream_index == -1;
+}
+
+void VideoDecoder::setLooping(bool looping) {
+    __atomic_store_n(&this->looping, looping, __ATOMIC_RELEASE);
+}
+
+void VideoDecoder::reuseVideoBuffer(u_int8_t* buffer, int size) {
+    if(reusableVideoBuffer != NULL) {
+        delete[] reusableVideoBuffer;
+    }
+    reusableVideoBuffer = buffer;
+    reusableVideoBufferSize = size;
+}
+
+RetainedVideoBuffer* VideoDecoder::retainVideoBuffer() {
+    if(!fileLoaded) {
+        return NULL;
+    }
+    //A decoding step may still switch to a new frame buffer, so which memory is retained is only certain once the
+    //destructor stopped decoding. That happens on the reaper thread, so the caller does not wait for it here.
+    videoBufferRetainer = new RetainedVideoBuffer();
+    return videoBufferRetainer;
+}
+
+void VideoDecoder::setOutputSize(int width, int height, int cropX, int cropY, int cropWidth, int cropHeight) {
+    outputSizeMutex.lock();
+    requestedOutputWidth = width;
+    requestedOutputHeight = height;
+    requestedCropX = cropX;
+    requestedCropY = cropY;
+    requestedCropWidth = cropWidth;
+    requestedCropHeight = cropHeight;
+    outputSizeMutex.unlock();
+    if(fileLoaded) {
+        //Applied by the decoding step before its next frame, until then it is loaded with the requested size
+        __atomic_store_n(&outputSizeRequested, true, __ATOMIC_RELEASE);
+        DecodeScheduler::getInstance()->wake();
+    }
+}
+
+void VideoDecoder::applyOutputSize() {
+    int oldCropX = videoCropX;
+    int oldCropY = videoCropY;
+    int oldCropWidth = videoCropWidth;
+    int oldCropHeight = videoCropHeight;
+    int oldOutputWidth = videoOutputWidth;
+    int oldOutputHeight = videoOutputHeight;
+    outputSizeMutex.lock();
+    __atomic_store_n(&outputSizeRequested, false, __ATOMIC_RELEASE);
+    sizeVideoOutput();
+    outputSizeMutex.unlock();
+    if(videoCropX == oldCropX && videoCropY == oldCropY && videoCropWidth == oldCropWidth && videoCropHeight == oldCropHeight
+            && videoOutputWidth == oldOutputWidth && videoOutputHeight == oldOutputHeight) {
+        return;
+    }
+    logDebug("[VideoPlayer::applyOutputSize] Converting frames to %dx%d instead of %dx%d\n", videoOutputWidth, videoOutputHeight, oldOutputWidth, oldOutputHeight);
+
+    //The frames buffered at the old size stay where they are, and are still shown
+    createVideoOutput();
+    describeVideoOutput(&pendingVideoOutput);
+    videoOutputSwitchCount = videoWriteCount;
+    //Release, so the render thread sees the new frame buffer together with the flag
+    __atomic_store_n(&videoOutputSwitchPending, true, __ATOMIC_RELEASE);
+}
+
+void VideoDecoder::takeVideoOutput(VideoBufferInfo* bufferInfo) {
+    if(__atomic_load_n(&videoOutputSwitchPending, __ATOMIC_ACQUIRE)) {
+        //Every frame of the old frame buffer was shown, and the caller no longer reads from it
+        if(shownVideoOutput.videoBuffer != pendingVideoOutput.videoBuffer) {
+            delete[] (u_int8_t*)shownVideoOutput.videoBuffer;
+        }
+        shownVideoOutput = pendingVideoOutput;
+        __atomic_store_n(&videoOutputSwitchPending, false, __ATOMIC_RELEASE);
+        //A size that was requested in the meantime waited for this
+        DecodeScheduler::getInstance()->wake();
+    }
+    fillBufferInfo(bufferInfo);
+}
+
+void VideoDecoder::openAudio() {
+    audioCodecContext = formatContext->streams[audioStreamIndex]->codec;
+    AVRational audioStreamTimeBase = formatContext->streams[audioStreamIndex]->time_base;
+    audioTimeBase = ((double)audioStreamTimeBase.num / (double)audioStreamTimeBase.den);
+
+    audioCodec = avcodec_find_decoder((audioCodecContext->codec_id));
+    if(audioCodec == NULL) {
+        logError("[VideoPlayer::openAudio] Could not find a suitable audio decoder!");
+        throw std::runtime_error("Could not find a suitable audio decoder!");
+    }
+
+    AVDictionary* codecOptions = NULL;
+    if(avcodec_open2(audioCodecContext, audioCodec, &codecOptions) < 0) {
+        logError("[VideoPlayer::openAudio] Could not open audio decoder!\n");
+        throw std::runtime_error("Could not open audio decoder!");
+    }
+
+    int channelLayout = 0;
+    switch(audioCodecContext->channels) {
+    case 1:
+        channelLayout = AV_CH_LAYOUT_MONO;
+        break;
+    case 2:
+        channelLayout = AV_CH_LAYOUT_STEREO;
+        break;
+    default:
+        logError("[VideoPlayer::openAudio] InputFile has unsupported number of audiochannels!");
+        throw std::runtime_error("InputFile has unsupported number of audiochannels!");
+    }
+    audioBuffer = new char[audioBufferSize];
+    memset(audioBuffer, 0, audioBufferSize);
+
+    //Setup conversion context, which will convert our audio to the right output format
+    swrContext = swr_alloc_set_opts(NULL, AV_CH_LAYOUT_STEREO, AV_SAMPLE_FMT_S16, audioCodecContext->sample_rate, channelLayout, AV_SAMPLE_FMT_FLTP, audioCodecContext->sample_rate, 0, NULL);
+    swr_init(swrContext);
+
+    //Let the audio thread decode up to a second ahead (16 bit stereo), but always hold a couple of chunks.
+    int audioRingBufferSize = audioCodecContext->sample_rate * 4;
+    if(audioRingBufferSize < audioBufferSize * 2) {
+        audioRingBufferSize = audioBufferSize * 2;
+    }
+    audioRingBuffer.allocate(audioRingBufferSize);
+}
+
+void VideoDecoder::discardUnusedStreams() {
+    for(unsigned int i = 0; i < formatContext->nb_streams; i++) {
+        bool used = (int)i == videoStreamIndex || ((int)i == audioStreamIndex && audioEnabled);
+        formatContext->streams[i]->discard = used ? AVDISCARD_DEFAULT : AVDISCARD_ALL;
+    }
+}
+
+bool VideoDecoder::setAudioEnabled(bool enabled, VideoBufferInfo* bufferInfo) {
+    if(!fileLoaded) {
+        //Used when the file is loaded
+        audioEnabled = enabled;
+        return false;
+    }
+    if(enabled == audioEnabled) {
+        fillBufferInfo(bufferInfo);
         return true;
+    }
+
+    pauseDecoding();
+    audioEnabled = enabled;
+    bool startAudioThread = false;
+    if(enabled && audioStreamIndex < 0 && foundAudioStreamIndex >= 0) {
+        //Disabled when loading, so it was never opened
+        audioStreamIndex = foundAudioStreamIndex;
+        try {
+            openAudio();
+            startAudioThread = true;
+        } catch(std::runtime_error&) {
+            //Already logged, playback continues without audio
+            audioStreamIndex = -1;
+            audioEnabled = false;
+        }
+    }
+    if(!enabled && audioStreamIndex >= 0) {
+        //Nobody takes audio packets anymore, so none may be queued, and nothing may be left once enabled again
+        audioPackets.clear();
+        if(hasPendingPacket && pendingPacket.stream_index == audioStreamIndex) {
+            av_free_packet(&pendingPacket);
+            hasPendingPacket = false;
+        }
+        audioLoopMarkerPending = false;
+        avcodec_flush_buffers(audioCodecContext);
+        audioRingBuffer.clear();
+        audioDecodedSize = 0;
+        audioDecodedUsed = 0;
+        audioRingBufferFilled = false;
+    }
+    discardUnusedStreams();
+    resumeDecoding();
+    if(startAudioThread) {
+        audioThread.start();
+    }
+
+    fillBufferInfo(bufferInfo);
+    return true;
+}
+
+void VideoDecoder::sizeVideoOutput() {
+    int sourceWidth = videoCodecContext->width;
+    int sourceHeight = videoCodecContext->height;
+
+    if(requestedCropWidth > 0 && requestedCropHeight > 0) {
+        //The chroma planes have half the resolution, so the shown part starts at an even pixel
+        videoCropX = std::max(0, std::min(requestedCropX, sourceWidth - 2)) & ~1;
+        videoCropY = std::max(0, std::min(requestedCropY, sourceHeight - 2)) & ~1;
+        videoCropWidth = std::min(requestedCropWidth, sourceWidth - videoCropX);
+        videoCropHeight = std::min(requestedCropHeight, sourceHeight - videoCropY);
     } else {
-        return false;
+        videoCropX = 0;
+        videoCropY = 0;
+        videoCropWidth = sourceWidth;
+        videoCropHeight = sourceHeight;
+    }
+
+    //Fit the shown part into the requested size, without changing its aspect ratio or scaling it up
+    double scale = 1.0;
+    if(requestedOutputWidth > 0) {
+        scale = std::min(scale, (double)requestedOutputWidth / videoCropWidth);
+    }
+    if(requestedOutputHeight > 0) {
+        scale = std::min(scale, (double)requestedOutputHeight / videoCropHeight);
+    }
+    if(scale < 1.0) {
+        videoOutputWidth = std::max(2, (int)(videoCropWidth * scale + 0.5) & ~1);
+        videoOutputHeight = std::max(2, (int)(videoCropHeight * scale + 0.5) & ~1);
+    } else {
+        videoOutputWidth = videoCropWidth;
+        videoOutputHeight = videoCropHeight;
     }
 }
 
-int numFramesDecoded = 0;
+void VideoDecoder::createVideoOutput() {
+    videoFrameSize = avpicture_get_size(outputPixelFormat, videoOutputWidth, videoOutputHeight);
+    logDebug("[VideoPlayer::createVideoOutput] buffer for single frame is of size: %d\n", videoFrameSize);
+
+    videoBufferSize = videoFrameSize * numBufferedFrames;
+    //The current frame buffer is freed by takeVideoOutput, once its frames are shown
+    if(reusableVideoBuffer != NULL && reusableVideoBufferSize >= videoBufferSize) {
+        logDebug("[VideoPlayer::createVideoOutput] reusing a frame buffer of size: %d\n", reusableVideoBufferSize);
+        videoBuffer = reusableVideoBuffer;
+        videoBufferCapacity = reusableVideoBufferSize;
+        reusableVideoBuffer = NULL;
+    } else {
+        videoBuffer = new u_int8_t[videoBufferSize];
+        videoBufferCapacity = videoBufferSize;
+    }
 
-void VideoDecoder::run() {
-    videoBufferMutex.lock();
-    while(!videoOutputEnded) {
-        while(videoNumFrameBuffered < (VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES - 1) && !videoOutputEnded) {
-            int indexToWrite = (videoCurrentBufferIndex + videoNumFrameBuffered) % VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES;
-
-            int frameFinished = false;
-            while(!frameFinished) {
-                //Keep reading until a video packet is read, or stream is ended.
-                while(videoPackets.empty() && readPacket());
-
-                if(videoPackets.empty()) {
-                    //End of stream reached, stop filling buffer
-                    videoOutputEnded = true;
-                    break;
-                }
+    //When the codec already outputs the requested format and size, the frames are plainly copied and no scaler is needed.
+    if(videoCodecContext->pix_fmt != outputPixelFormat || videoOutputWidth != videoCropWidth || videoOutputHeight != videoCropHeight) {
+        //Bilinear scaling skips pixels when scaling down a lot, area averaging doesn't
+        int flags = videoOutputWidth < videoCropWidth ? SWS_AREA : SWS_BILINEAR;
+        swsContext = sws_getCachedContext(swsContext,
+                                          videoCropWidth,
+                                          videoCropHeight,
+                                          videoCodecContext->pix_fmt,
+                                          videoOutputWidth,
+                                          videoOutputHeight,
+                                          outputPixelFormat,
+                                          flags,
+                                          NULL,
+                                          NULL,
+                                          NULL);
+    } else if(swsContext != NULL) {
+        sws_freeContext(swsContext);
+        swsContext = NULL;
+    }
 
-                AVPacket videoPacket = videoPackets.back();
-                videoPackets.pop_back();
-                videoBufferMutex.unlock();
+    if(outputFrames == NULL) {
+        outputFrames = new AVFrame*[numBufferedFrames];
+        for(int i = 0; i < numBufferedFrames; i++) {
+            outputFrames[i] = av_frame_alloc();
+        }
+    }
+    for(int i = 0; i < numBufferedFrames; i++) {
+        avpicture_fill((AVPicture *)outputFrames[i], videoBuffer + (i * videoFrameSize), outputPixelFormat, videoOutputWidth, videoOutputHeight);
+    }
+}
 
-                if(firstVideoPacket) {
-                    firstVideoPacket = false;
-                    videoTimestamps[indexToWrite] = timeBase*(double)videoPacket.pts;
-                }
+void VideoDecoder::describeVideoOutput(VideoBufferInfo* bufferInfo) {
+    bufferInfo->videoBuffer = videoBuffer;
+    bufferInfo->videoBufferSize = videoBufferSize;
+    bufferInfo->videoFrameSize = videoFrameSize;
+    bufferInfo->videoWidth = videoOutputWidth;
+    bufferInfo->videoHeight = videoOutputHeight;
+    bufferInfo->videoSourceWidth = videoCropWidth;
+    bufferInfo->videoSourceHeight = videoCropHeight;
+}
+
+void VideoDecoder::fillBufferInfo(VideoBufferInfo* bufferInfo) {
+    bufferInfo->videoBuffer = shownVideoOutput.videoBuffer;
+    bufferInfo->videoBufferSize = shownVideoOutput.videoBufferSize;
+    bufferInfo->videoFrameSize = shownVideoOutput.videoFrameSize;
+    bufferInfo->videoWidth = shownVideoOutput.videoWidth;
+    bufferInfo->videoHeight = shownVideoOutput.videoHeight;
+    bufferInfo->videoSourceWidth = shownVideoOutput.videoSourceWidth;
+    bufferInfo->videoSourceHeight = shownVideoOutput.videoSourceHeight;
+    if(audioStreamIndex >= 0) {
+        bufferInfo->audioBuffer = audioBuffer;
+        bufferInfo->audioBufferSize = audioBufferSize;
+        bufferInfo->audioChannels = audioCodecContext->channels;
+        bufferInfo->audioSampleRate = audioCodecContext->sample_rate;
+    }
+}
+
+void VideoDecoder::waitForPacketQueues() {
+    //The consumers don't notify, so popping a packet never takes a lock
+    packetQueueMutex.lock();
+    timespec timeout;
+    timeoutFromNow(&timeout, VIDEOPLAYER_PACKET_QUEUE_WAIT_MILLIS);
+    packetQueueConditional.wait(&timeout);
+    packetQueueMutex.unlock();
+}
+
+void VideoDecoder::notifyPacketsAvailable() {
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
+    if(__atomic_load_n(&videoWaitingForPackets, __ATOMIC_SEQ_CST)) {
+        DecodeScheduler::getInstance()->wake();
+    }
+}
+
+bool VideoDecoder::needsDecoding() {
+    return !__atomic_load_n(&videoThreadStopped, __ATOMIC_ACQUIRE) && !isSeekRequested()
+            && !__atomic_load_n(&videoOutputEnded, __ATOMIC_ACQUIRE)
+            && getNumBufferedVideoFrames() < (numBufferedFrames - 1)
+            && !(__atomic_load_n(&videoWaitingForPackets, __ATOMIC_ACQUIRE) && audioPackets.isFull() && videoPackets.isEmpty());
+}
+
+int VideoDecoder::getDecodePriority() {
+    return __atomic_load_n(&decodePriority, __ATOMIC_ACQUIRE);
+}
+
+void VideoDecoder::setDecodePriority(int priority) {
+    __atomic_store_n(&decodePriority, priority, __ATOMIC_RELEASE);
+    DecodeScheduler::getInstance()->wake();
+}
+
+double VideoDecoder::getDecodeLead() {
+    //Only a hint for the scheduler, so read without the lock
+    int64_t presentationTime = __atomic_load_n(&presentationTimeMicros, __ATOMIC_ACQUIRE);
+    if(presentationTime < 0) {
+        //Not playing yet, the buffer with the fewest frames is the most urgent
+        return -1.0 + (double)getNumBufferedVideoFrames() / numBufferedFrames;
+    }
+    return toSeconds(__atomic_load_n(&lastDecodedTimeMicros, __ATOMIC_ACQUIRE) - presentationTime);
+}
+
+void VideoDecoder::decodeStep() {
+    if(!needsDecoding()) {
+        return;
+    }
+    if(__atomic_load_n(&outputSizeRequested, __ATOMIC_ACQUIRE) && !__atomic_load_n(&videoOutputSwitchPending, __ATOMIC_ACQUIRE)) {
+        applyOutputSize();
+    }
+    //Only this step advances the write count, and needsDecoding made sure the slot at it is not shown anymore
+    unsigned int written = videoWriteCount;
+    int indexToWrite = (int)(written % numBufferedFrames);
+    __atomic_store_n(&videoWaitingForPackets, false, __ATOMIC_RELEASE);
+    updateFrameSkipping();
+
+    int frameFinished = false;
+    while(!frameFinished) {
+        if(__atomic_load_n(&videoThreadStopped, __ATOMIC_ACQUIRE) || isSeekRequested()) {
+            //A seek or a stop waits for this step to finish, so don't keep it waiting
+            break;
+        }
+        //Keep reading until a video packet is read, or stream is ended.
+        AVPacket videoPacket;
+        bool draining = videoLoopDraining;
+        bool interrupted = false;
+        while(!draining && !videoPackets.pop(&videoPacket)) {
+            ReadPacketResult result = readPacket();
+            if(result == PACKET_END_OF_STREAM) {
+                draining = !videoPackets.pop(&videoPacket);
+                break;
+            } else if(result == PACKET_QUEUE_FULL) {
+                //The demuxer can't continue until the audio queue has room, which may take long when the audio is
+                //not played. Don't keep the worker meanwhile, needsDecoding reports false until there is room.
+                __atomic_store_n(&videoWaitingForPackets, true, __ATOMIC_SEQ_CST);
+                //Pairs with the fence in notifyPacketsAvailable: either the scheduler sees the packet or the room
+                //that came in meanwhile, or the audio thread sees that this step waits, and wakes the scheduler.
+                __atomic_thread_fence(__ATOMIC_SEQ_CST);
+                interrupted = true;
+                break;
+            }
+        }
+        if(interrupted) {
+            break;
+        }
+        if(!draining && isLoopMarker(videoPacket)) {
+            //The loop ends here, get the remaining frames out before the codec continues with the next loop
+            videoLoopDraining = true;
+            draining = true;
+        }
+        if(draining) {
+            //End of stream or loop reached. The decoder may still hold frames (it does when frame threading is
+            //active), these are returned by feeding it empty packets.
+            av_init_packet(&videoPacket);
+            videoPacket.data = NULL;
+            videoPacket.size = 0;
+        }
 
-                //Decode video
-                avcodec_decode_video2(videoCodecContext, frame, &frameFinished, &videoPacket);
-                if(frameFinished) {
-                    //The frame is finished, so scale it into an RGB frame
-                    sws_scale(swsContext, (uint8_t const * const *)frame->data, frame->linesize, 0, videoCodecContext->height, rgbFrames[indexToWrite]->data, rgbFrames[indexToWrite]->linesize);
-                    logDebug("[VideoPlayer::run] Filled buffer on position %d with frame %d\n", indexToWrite, numFramesDecoded++);
-                    //We are done with the packet, free it, then return status.
-                    av_free_packet(&videoPacket);
-                    firstVideoPacket = true;
-                    //Atomic increment of videoNumFrameBuffered
-                    __sync_add_and_fetch(&videoNumFrameBuffered, 1);
-                    if(videoBufferMutex.trylock() == 0) {
-                        videoBufferConditional.signal();
-                        videoBufferMutex.unlock();
-                    }
+        if(firstVideoPacket && !draining) {
+            firstVideoPacket = false;
+            videoTimestamps[indexToWrite] = timeBase*(double)videoPacket.pts + videoLoopOffset;
+        }
+
+        //Decode video
+        int gotFrame = false;
+        avcodec_decode_video2(videoCodecContext, frame, &gotFrame, &videoPacket);
+        av_free_packet(&videoPacket);
+        if(gotFrame) {
+            //A threaded decoder returns its frames a few packets late, so prefer the frame's own timestamp.
+            int64_t framePts = av_frame_get_best_effort_timestamp(frame);
+            if(framePts != AV_NOPTS_VALUE) {
+                videoTimestamps[indexToWrite] = timeBase*(double)framePts + videoLoopOffset;
+            }
+            firstVideoPacket = true;
+
+            if(videoSkipUntil >= 0 && videoTimestamps[indexToWrite] < videoSkipUntil) {
+                //A seek lands on the keyframe before its position, decode forward without showing these
+                logDebug("[VideoPlayer::decodeStep] Skipped frame at %f while seeking to %f\n", videoTimestamps[indexToWrite], videoSkipUntil);
+                //Every skipped frame is a step of its own. Otherwise a seek or a stop that comes in meanwhile would
+                //wait until the whole group of pictures up to the position is decoded.
+                break;
+            } else {
+                videoSkipUntil = -1;
+                __atomic_store_n(&lastDecodedTimeMicros, toMicros(videoTimestamps[indexToWrite]), __ATOMIC_RELEASE);
+
+                //The frame is finished, so convert the shown part of it into the output format
+                AVPicture picture;
+                if(av_picture_crop(&picture, (AVPicture *)frame, videoCodecContext->pix_fmt, videoCropY, videoCropX) < 0) {
+                    //Only fails for formats that can't be cropped in place, show the top left part instead
+                    memcpy(picture.data, frame->data, sizeof(picture.data));
+                    memcpy(picture.linesize, frame->linesize, sizeof(picture.linesize));
                 }
-                videoBufferMutex.lock();
+                if(swsContext != NULL) {
+                    sws_scale(swsContext, (uint8_t const * const *)picture.data, picture.linesize, 0, videoCropHeight, outputFrames[indexToWrite]->data, outputFrames[indexToWrite]->linesize);
+                } else {
+                    av_picture_copy((AVPicture *)outputFrames[indexToWrite], &picture, outputPixelFormat, videoOutputWidth, videoOutputHeight);
+                }
+                logDebug("[VideoPlayer::decodeStep] Filled buffer on position %d with frame %d\n", indexToWrite, numFramesDecoded++);
+                frameFinished = true;
+                //Release, so the frame and its timestamp are complete before the render thread can see them
+                __atomic_store_n(&videoWriteCount, written + 1, __ATOMIC_RELEASE);
             }
         }
-        videoBufferConditional.wait();
+
+        if(draining && !gotFrame) {
+            if(videoLoopDraining) {
+                //Decoder is fully drained, continue with the next loop
+                avcodec_flush_buffers(videoCodecContext);
+                videoLoopOffset += loopDuration;
+                videoLoopDraining = false;
+                continue;
+            }
+            //Decoder is fully drained, stop filling buffer
+            __atomic_store_n(&videoOutputEnded, true, __ATOMIC_RELEASE);
+            break;
+        }
     }
-    videoBufferMutex.unlock();
+    if(!needsDecoding()) {
+        notifyBufferWaiters();
+    }
+}
 
-    if(cleanupFunc != NULL) {
-        cleanupFunc(this->customFileBufferFuncData);
+void VideoDecoder::updateFrameSkipping() {
+    int64_t presentationTime = __atomic_load_n(&presentationTimeMicros, __ATOMIC_ACQUIRE);
+    if(presentationTime < 0) {
+        return;
+    }
+    double lag = toSeconds(presentationTime - __atomic_load_n(&lastDecodedTimeMicros, __ATOMIC_ACQUIRE));
+    int level = frameSkipLevel;
+    if(lag > VIDEOPLAYER_SKIP_NONKEY_LAG) {
+        level = 3;
+    } else if(lag > VIDEOPLAYER_SKIP_NONREF_LAG && level < 2) {
+        level = 2;
+    } else if(lag > VIDEOPLAYER_SKIP_LOOP_FILTER_LAG && level < 1) {
+        level = 1;
+    } else if(lag < -VIDEOPLAYER_SKIP_RECOVER_LEAD && level > 0) {
+        //Caught up, try one level better
+        level--;
+    }
+    if(level != frameSkipLevel) {
+        logDebug("[VideoPlayer::updateFrameSkipping] Decoder is %f seconds behind, switching to skip level %d\n", lag, level);
+        applyFrameSkipping(level);
+    }
+}
+
+void VideoDecoder::applyFrameSkipping(int level) {
+    frameSkipLevel = level;
+    videoCodecContext->skip_loop_filter = level >= 1 ? AVDISCARD_ALL : AVDISCARD_DEFAULT;
+    if(level >= 3) {
+        videoCodecContext->skip_frame = AVDISCARD_NONKEY;
+    } else if(level >= 2) {
+        videoCodecContext->skip_frame = AVDISCARD_NONREF;
+    } else {
+        videoCodecContext->skip_frame = AVDISCARD_DEFAULT;
     }
 }
 
+bool VideoDecoder::isSeekRequested() {
+    return __atomic_load_n(&seekRequested, __ATOMIC_ACQUIRE);
+}
+
+void VideoDecoder::pauseDecoding() {
+    __atomic_store_n(&seekRequested, true, __ATOMIC_RELEASE);
+
+    //A step that is running notices the request, and no new step starts until resumeDecoding
+    DecodeScheduler::getInstance()->waitUntilIdle(this);
+
+    if(audioStreamIndex >= 0) {
+        audioThreadMutex.lock();
+        audioThreadConditional.broadcast();
+        while(!audioThreadParked) {
+            audioThreadConditional.wait();
+        }
+        audioThreadMutex.unlock();
+    }
+}
+
+void VideoDecoder::resumeDecoding() {
+    __atomic_store_n(&seekRequested, false, __ATOMIC_RELEASE);
+    DecodeScheduler::getInstance()->wake();
+
+    if(audioStreamIndex >= 0) {
+        audioThreadMutex.lock();
+        audioThreadConditional.broadcast();
+        audioThreadMutex.unlock();
+    }
+}
+
+void VideoDecoder::seek(int64_t positionMillis) {
+    if(!fileLoaded) {
+        logError("[VideoPlayer::seek] Tried to seek before a file was loaded!\n");
+        throw std::runtime_error("No file loaded!");
+    }
+    if(positionMillis < 0) {
+        positionMillis = 0;
+    }
+    double position = positionMillis / 1000.0;
+
+    pauseDecoding();
+
+    //Containers can only seek to keyframes, so seek to the one before the position and decode forward from there.
+    int64_t timestamp = (int64_t)(position / timeBase);
+    int err = av_seek_frame(formatContext, videoStreamIndex, timestamp, AVSEEK_FLAG_BACKWARD);
+    if(err < 0) {
+        char error[1024];
+        av_strerror(err, error, 1024);
+        logError("[VideoPlayer::seek] Error seeking to %lld ms: %s\n", (long long)positionMillis, error);
+        resumeDecoding();
+        throw std::runtime_error("Could not seek!");
+    }
+
+    //Nothing from before the seek may be decoded or shown anymore
+    avcodec_flush_buffers(videoCodecContext);
+    videoPackets.clear();
+    if(audioStreamIndex >= 0) {
+        avcodec_flush_buffers(audioCodecContext);
+        audioPackets.clear();
+    }
+    if(hasPendingPacket) {
+        av_free_packet(&pendingPacket);
+        hasPendingPacket = false;
+    }
+    videoLoopMarkerPending = false;
+    audioLoopMarkerPending = false;
+
+    videoReadCount = 0;
+    __atomic_store_n(&videoWriteCount, 0, __ATOMIC_RELEASE);
+    //The frames of an old size are thrown away, so the next frame is the first one of the new frame buffer
+    videoOutputSwitchCount = 0;
+    videoOutputEnded = false;
+    firstVideoPacket = true;
+    videoSkipUntil = position;
+    videoLoopOffset = 0;
+    videoLoopDraining = false;
+    videoWaitingForPackets = false;
+    __atomic_store_n(&presentationTimeMicros, -1, __ATOMIC_RELEASE);
+    __atomic_store_n(&lastDecodedTimeMicros, toMicros(position), __ATOMIC_RELEASE);
+    applyFrameSkipping(0);
+
+    audioRingBuffer.clear();
+    audioDecodedSize = 0;
+    audioDecodedUsed = 0;
+    audioRingBufferFilled = false;
+    audioDecodingEnded = false;
+    audioSkipUntil = position;
+    audioLoopOffset = 0;
+
+    resumeDecoding();
+}
+
+int64_t VideoDecoder::getDuration() {
+    if(!fileLoaded) {
+        return -1;
+    }
+    if(formatContext->duration != AV_NOPTS_VALUE) {
+        return formatContext->duration / (AV_TIME_BASE / 1000);
+    }
+    AVStream* videoStream = formatContext->streams[videoStreamIndex];
+    if(videoStream->duration != AV_NOPTS_VALUE) {
+        return (int64_t)(timeBase * videoStream->duration * 1000);
+    }
+    return -1;
+}
+
 int VideoDecoder::getVideoFrameSize()
 {
     return videoFrameSize;
 }
 
 bool VideoDecoder::isBuffered() {
-    return videoNumFrameBuffered == (VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES - 1);
+    return getNumBufferedVideoFrames() == (numBufferedFrames - 1);
+}
+
+bool VideoDecoder::isReadyToPlay() {
+    if(getNumBufferedVideoFrames() == 0 && !__atomic_load_n(&videoOutputEnded, __ATOMIC_ACQUIRE)) {
+        return false;
+    }
+    //Playback reads a lot of audio at once when it starts, like in waitForBuffers
+    if(audioStreamIndex >= 0 && audioEnabled) {
+        audioThreadMutex.lock();
+        bool ready = audioRingBufferFilled || audioDecodingEnded;
+        audioThreadMutex.unlock();
+        return ready;
+    }
+    return true;
 }
 
 
@@ -491,6 +1404,11 @@ FillFileBufferFunc VideoDecoder::getFillFileBufferFunc() const
     return fillFileBufferFunc;
 }
 
+SeekFileBufferFunc VideoDecoder::getSeekFileBufferFunc() const
+{
+    return seekFileBufferFunc;
+}
+
 void *VideoDecoder::getCustomFileBufferFuncData() const
 {
     return customFileBufferFuncData;
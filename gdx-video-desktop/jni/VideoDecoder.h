@@ -30,24 +30,64 @@ extern "C"
 
 #include "Utilities.h"
 #include "Thread.hpp"
+#include "DecodeScheduler.hpp"
 #include "Mutex.hpp"
 #include "CondVar.hpp"
+#include "RingBuffer.hpp"
+#include "PacketQueue.hpp"
+#include "RetainedVideoBuffer.hpp"
 
-#include <list>
-
-//Should always be bigger then 1! If not, the buffer will never be filled, because the buffer will never be completely full.
-//It will always have 1 single empty element, which is used as protection for faster synchronization.
-#define VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES 10
-#define VIDEOPLAYER_AUDIO_BUFFER_SIZE 1024
+//Defaults for the VideoDecoderConfig values. Keep in sync with the defaults in VideoDecoderConfig.java
+#define VIDEOPLAYER_DEFAULT_NUM_BUFFERED_FRAMES 10
+#define VIDEOPLAYER_DEFAULT_AUDIO_BUFFER_SIZE 1024
+#define VIDEOPLAYER_DEFAULT_IO_BUFFER_SIZE (256 * 1024)
+#define VIDEOPLAYER_DEFAULT_NUM_DECODE_THREADS 1
+#define VIDEOPLAYER_DEFAULT_NUM_QUEUED_PACKETS 128
 #define MAX_AUDIO_FRAME_SIZE 192000
-#define CUSTOMIO_BUFFER_SIZE 4096
+//How long the audio thread sleeps when the decoded audio buffer is full, before checking for room again.
+#define VIDEOPLAYER_AUDIO_THREAD_WAIT_MILLIS 10
+//How long a decoding thread sleeps when the packet it needs is stuck behind a full queue of the other stream.
+#define VIDEOPLAYER_PACKET_QUEUE_WAIT_MILLIS 2
+//How far playback may get ahead of the newest decoded frame (in seconds), before the decoder skips the loop filter,
+//skips non reference frames, or only decodes keyframes to catch up.
+#define VIDEOPLAYER_SKIP_LOOP_FILTER_LAG 0.0
+#define VIDEOPLAYER_SKIP_NONREF_LAG 0.25
+#define VIDEOPLAYER_SKIP_NONKEY_LAG 1.0
+//How far the decoder has to be ahead of playback again (in seconds), before it decodes one level better.
+#define VIDEOPLAYER_SKIP_RECOVER_LEAD 0.1
+//Returned by nextVideoFrameIndex when no new frame is decoded yet. Keep in sync with the constant in VideoDecoder.java
+#define VIDEOPLAYER_FRAME_UNCHANGED -2
+//Returned by nextVideoFrameIndex when the next frame has a new size, see takeVideoOutput. Keep in sync with the constant
+//in VideoDecoder.java
+#define VIDEOPLAYER_FRAME_OUTPUT_CHANGED -3
+
+//Pixel formats the decoded frames can be converted to. Keep in sync with the constants in VideoDecoder.java
+#define VIDEOPLAYER_PIXEL_FORMAT_RGB24 0
+#define VIDEOPLAYER_PIXEL_FORMAT_YUV420P 1
+
+struct VideoDecoderConfig {
+    //Should always be bigger then 1! If not, the buffer will never be filled, because the buffer will never be completely full.
+    //It will always have 1 single empty element, which is used as protection for faster synchronization.
+    int numBufferedFrames;
+    int audioBufferSize;
+    int ioBufferSize;
+    //The amount of threads the video codec may use for frame and slice threading.
+    int numDecodeThreads;
+    //The amount of demuxed packets that can be queued per stream.
+    int numQueuedPackets;
+};
 
 struct VideoBufferInfo {
     void* videoBuffer;
     void* audioBuffer;
     int videoBufferSize;
+    int videoFrameSize;
+    //The size of the frames in the frame buffer.
     int videoWidth;
     int videoHeight;
+    //The size of the shown part of the video, before it is scaled.
+    int videoSourceWidth;
+    int videoSourceHeight;
     int audioBufferSize;
     int audioChannels;
     int audioSampleRate;
@@ -58,14 +98,35 @@ struct VideoBufferInfo {
  *  the buffer's size. The function needs to return the amount of data that is filled into the buffer.
  */
 typedef int (*FillFileBufferFunc)(void*, uint8_t*, int);
+/**
+ *  The SeekFileBufferFunc function will give a pointer to some data you gave to it, an offset and a whence value, which
+ *  can be SEEK_SET, SEEK_CUR, SEEK_END or AVSEEK_SIZE. The function needs to return the new position in the file, or
+ *  the size of the file for AVSEEK_SIZE, or a negative value on failure.
+ */
+typedef int64_t (*SeekFileBufferFunc)(void*, int64_t, int);
 typedef void (*CleanupFunc)(void*);
 
+class VideoDecoder;
+
+/**
+ * @brief The AudioThread class decodes the audio of a VideoDecoder on its own thread, ahead of playback.
+ */
+class AudioThread : public Thread {
+public:
+    AudioThread(VideoDecoder* decoder);
+    virtual void run();
+private:
+    VideoDecoder* decoder;
+};
+
 /**
- * @brief The VideoPlayer class is the base class which will handle everything needed to play a videofile.
+ * @brief The VideoPlayer class is the base class which will handle everything needed to play a videofile. The video is
+ * decoded by the workers of the DecodeScheduler, the audio by a thread of its own.
  * 
  * @author Rob Bogie <rob.bogie@codepoke.net>
  */
-class VideoDecoder : private Thread{
+class VideoDecoder : private DecodeTask {
+    friend class AudioThread;
 public:
     /**
      * @brief VideoPlayer Default constructor
@@ -76,24 +137,56 @@ public:
      */
     virtual ~VideoDecoder();
 
+    /**
+     * @brief stop Tells the decoding threads to stop, without waiting for them, so the decoder can be deleted in the
+     * background by the DecoderReaper. Nothing else should be called afterwards. When the frame buffer was retained,
+     * this waits for a decoding step that is running, since the next decoder may write into that memory right away.
+     */
+    void stop();
+
     /**
      * @brief loadFile This function will load the given file, and creates a buffer which will be put in the pointer.
      * @param filename The filename of the file to load
+     * @param pixelFormat One of the VIDEOPLAYER_PIXEL_FORMAT_* values, the format the frames in the buffer will have.
+     * @param config The buffer sizes to use, or NULL to use the defaults.
      * @param bufferPointer A reference to a void* which will then be filled with the buffer address.
      * @return The size of the buffer
      */
-    void loadFile(char* filename, VideoBufferInfo* bufferInfo);
-    void loadFile(FillFileBufferFunc func, void* funcData, CleanupFunc cleanupFunc, VideoBufferInfo* bufferInfo);
+    void loadFile(char* filename, int pixelFormat, const VideoDecoderConfig* config, VideoBufferInfo* bufferInfo);
+    void loadFile(FillFileBufferFunc func, SeekFileBufferFunc seekFunc, void* funcData, CleanupFunc cleanupFunc, int pixelFormat, const VideoDecoderConfig* config, VideoBufferInfo* bufferInfo);
+    /**
+     * @brief nextVideoFrameIndex This function will move on to the next available frame in the frame buffer. It never
+     * waits for the decoder: when no new frame is decoded yet, the frame that was returned last stays the current one.
+     * @return The index of the frame inside of the frame buffer, -1 when the end of the video is reached,
+     * VIDEOPLAYER_FRAME_UNCHANGED when no new frame is decoded yet, or VIDEOPLAYER_FRAME_OUTPUT_CHANGED when the next
+     * frame is in a new frame buffer, which has to be taken with takeVideoOutput first.
+     * The frame stays untouched until this function is called again.
+     */
+    int nextVideoFrameIndex();
     /**
-     * @brief fillBufferWithNextFrame This function will fill the buffers with the data of the next available frame
-     * @return Whether a new frame was available
+     * @brief dropLateVideoFrames Throws away the buffered frames that are already late at the given playback time. A
+     * frame is late when the frame after it should already be shown. The last buffered frame is always kept, so
+     * nextVideoFrameIndex returns the frame that is due now. Like nextVideoFrameIndex, it never waits for the decoder. The playback time is also what the decoding thread
+     * compares its progress to, to decide whether it should decode faster at a lower quality.
+     * @param playbackTime The current playback time in seconds
+     * @return The amount of frames that were thrown away.
      */
-    u_int8_t* nextVideoFrame();
+    int dropLateVideoFrames(double playbackTime);
     /**
-     * @brief updateAudioBuffer This function will fill the audio buffers with the next amount of data.
-     * @return
+     * @brief updateAudioBuffer This function will fill the audio buffers with the next amount of data. The audio is
+     * decoded ahead of time by the audio thread, so this only copies already decoded data. When the audio thread
+     * could not keep up, the remainder is filled with silence.
      */
     void updateAudioBuffer();
+    /**
+     * @brief readAudio Copies the next decoded audio into the given memory in one go, as 16 bit stereo. Like
+     * updateAudioBuffer, this never waits for the audio thread, and fills what is missing with silence.
+     * @param buffer The memory to copy the audio into.
+     * @param size The amount of bytes to copy. Should be a multiple of 4, whole samples.
+     * @return The amount of bytes at the end of the memory that were filled with silence, so a clock that follows the
+     * played audio can leave them out.
+     */
+    int readAudio(char* buffer, int size);
 
     /**
      * @brief getCurrentFrameTimestamp    This function will return the latest available Presentation TimeStamp. This is the
@@ -112,23 +205,254 @@ public:
      * @return Whether the framebuffer is full.
      */
     bool isBuffered();
+
+    /**
+     * @brief isReadyToPlay Returns whether playback can continue after loading or seeking: the first frame is in the
+     * frame buffer, or the video has ended, and the audio ring buffer is filled when there is audio.
+     * @return Whether playback can continue.
+     */
+    bool isReadyToPlay();
+
+    /**
+     * @brief seek This function will move playback to the given position. The demuxer is moved to the closest keyframe
+     * before the position, after which frames and audio are decoded up to the position and thrown away. Only waits for a
+     * decoding step that is running, which decodes at most one frame. The buffers are filled again by the decoding
+     * threads, isReadyToPlay tells when playback can continue.
+     * @param positionMillis The position in milliseconds
+     */
+    void seek(int64_t positionMillis);
+
+    /**
+     * @brief getDuration
+     * @return The duration of the video in milliseconds, or -1 when it is not known.
+     */
+    int64_t getDuration();
+
+    /**
+     * @brief setLooping Sets whether the video starts over when its end is reached. The demuxer is then rewound in
+     * place, and decoding continues into the same buffers, so the start of the next loop is already buffered when
+     * the current one ends. The timestamps keep increasing over loops. Can be changed at any time.
+     */
+    void setLooping(bool looping);
+
+    /**
+     * @brief reuseVideoBuffer Hands over the frame buffer memory of a previous decoder, which is used instead of
+     * allocating a new frame buffer when it is large enough. Should be called before loading a file. The decoder owns
+     * the memory from then on.
+     * @param buffer Memory that was allocated with new[], as taken out of the handle returned by retainVideoBuffer.
+     * @param size The size of the memory in bytes.
+     */
+    void reuseVideoBuffer(u_int8_t* buffer, int size);
+
+    /**
+     * @brief retainVideoBuffer Keeps the frame buffer from being freed when this decoder is deleted, so it can be
+     * handed to the next decoder with reuseVideoBuffer. Returns right away: the buffer is filled into the returned
+     * handle once this decoder is deleted, so the caller either takes it out or releases it. The decoder should be
+     * deleted after this call.
+     * @return The handle to the frame buffer, or NULL when nothing was loaded.
+     */
+    RetainedVideoBuffer* retainVideoBuffer();
+
+    /**
+     * @brief setDecodePriority Sets the priority of this decoder among all decoders of the process. When there is more
+     * video to decode than the DecodeScheduler has workers for, decoders with a higher priority are served first.
+     * Among decoders with the same priority, the one closest to running out of frames is served first.
+     */
+    void setDecodePriority(int priority);
+
+    /**
+     * @brief setOutputSize Sets the size the frames are scaled down to, and the part of the video they show. Frames keep
+     * the aspect ratio of the shown part, and are never scaled up. When called after loading, the decoding step
+     * switches to the new size before its next frame, and decodes into a new frame buffer from then on. The frames
+     * that were already buffered at the old size are still shown. Once they are, nextVideoFrameIndex returns
+     * VIDEOPLAYER_FRAME_OUTPUT_CHANGED. Never waits for the decoder.
+     * @param width The maximum width of the frames, or 0 for the width of the shown part.
+     * @param height The maximum height of the frames, or 0 for the height of the shown part.
+     * @param cropX The left edge of the shown part, in pixels of the video. Rounded down to an even value.
+     * @param cropY The top edge of the shown part. Rounded down to an even value.
+     * @param cropWidth The width of the shown part, or 0 to show the whole video.
+     * @param cropHeight The height of the shown part, or 0 to show the whole video.
+     */
+    void setOutputSize(int width, int height, int cropX, int cropY, int cropWidth, int cropHeight);
+
+    /**
+     * @brief takeVideoOutput Moves the shown frames over to the new frame buffer, after nextVideoFrameIndex returned
+     * VIDEOPLAYER_FRAME_OUTPUT_CHANGED. The old frame buffer is freed. Should be called by the thread that calls
+     * nextVideoFrameIndex.
+     * @param bufferInfo Filled with the buffers, which now describe the new frame buffer.
+     */
+    void takeVideoOutput(VideoBufferInfo* bufferInfo);
+
+    /**
+     * @brief setAudioEnabled Sets whether the audio is decoded. When disabled before loading, the audio stream is not
+     * even opened. The demuxer discards the packets of all streams that are not decoded. When enabled during playback,
+     * the audio continues from where the demuxer is, so the caller should seek to the playback position to get it
+     * back in sync.
+     * @param bufferInfo Filled with the buffers when loaded, which include the audio buffer once the audio is opened.
+     * @return Whether a file is loaded, and bufferInfo was filled.
+     */
+    bool setAudioEnabled(bool enabled, VideoBufferInfo* bufferInfo);
+
     void *getCustomFileBufferFuncData() const;
     FillFileBufferFunc getFillFileBufferFunc() const;
+    SeekFileBufferFunc getSeekFileBufferFunc() const;
 private:
+    enum ReadPacketResult {
+        PACKET_READ,
+        PACKET_QUEUE_FULL,
+        PACKET_END_OF_STREAM
+    };
+
+    /**
+     * @brief decodeAudio Decodes the next audio frame into the given buffer, as 16 bit stereo.
+     * @return The size of the decoded data, -1 when the end of the stream is reached, or -2 when interrupted because a
+     * seek was requested or the audio thread was stopped.
+     */
     int decodeAudio(void* audioBuffer);
 
-    bool readPacket();
+    /**
+     * @brief readPacket Reads the next packet from the container, and queues it for the stream it belongs to. Can be
+     * called by both decoding threads.
+     * @return PACKET_QUEUE_FULL when the packet could not be queued because the queue of its stream is full. The
+     * packet is kept and queued by a later call, once its consumer made room.
+     */
+    ReadPacketResult readPacket();
 
     /**
-     * @brief run Implements the Threads run method, and will fill videobuffers
+     * @brief rewindForLoop Moves the demuxer back to the start of the container, and queues a loop marker for each
+     * stream, so the decoders know where the next loop begins. Should be called with the demux lock held.
+     * @return Whether the demuxer could be rewound.
      */
-    virtual void run();
+    bool rewindForLoop();
+
+    /**
+     * @brief pushLoopMarkers Queues the loop markers that did not fit in their queue yet. Should be called with the
+     * demux lock held.
+     * @return Whether all markers are queued.
+     */
+    bool pushLoopMarkers();
+
+    static bool isLoopMarker(const AVPacket& packet);
+
+    /**
+     * @brief waitForPacketQueues Gives the consumers of the packet queues some time to make room.
+     */
+    void waitForPacketQueues();
+
+    /**
+     * @brief notifyPacketsAvailable Wakes the scheduler when the video decoding waits for packets. Called by the audio
+     * thread after it made room in the audio packet queue, or may have queued a video packet.
+     */
+    void notifyPacketsAvailable();
+
+    /**
+     * @brief waitForBuffers Waits until the frame buffer and the audio ring buffer are filled, or until the end of
+     * the stream is reached.
+     */
+    void waitForBuffers();
+
+    /**
+     * @brief pauseDecoding Makes both decoding threads wait at a point where they don't use the demuxer, the codecs or
+     * the buffers, so these can be reset by a seek. Returns once both threads are waiting.
+     */
+    void pauseDecoding();
+
+    /**
+     * @brief resumeDecoding Lets the decoding threads continue after pauseDecoding.
+     */
+    void resumeDecoding();
+
+    bool isSeekRequested();
+
+    /**
+     * @brief sizeVideoOutput Computes the shown part of the video and the size of the frames, from the requested ones.
+     */
+    void sizeVideoOutput();
+
+    /**
+     * @brief createVideoOutput Creates the scaler and a new frame buffer for the current output size. The current frame
+     * buffer is left alone, since its frames may still be shown. Should only be called from the decoding step, or
+     * before it runs.
+     */
+    void createVideoOutput();
+
+    /**
+     * @brief applyOutputSize Called by the decoding step, switches to the size requested by setOutputSize. Waits with
+     * that until the previous switch is taken by the render thread, so there are never more than two frame buffers.
+     */
+    void applyOutputSize();
+
+    /**
+     * @brief describeVideoOutput Fills the video part of the info with the frame buffer the decoding step writes to.
+     */
+    void describeVideoOutput(VideoBufferInfo* bufferInfo);
+
+    /**
+     * @brief fillBufferInfo Fills the info with the frame buffer the render thread reads from, and the audio buffer.
+     */
+    void fillBufferInfo(VideoBufferInfo* bufferInfo);
+
+    /**
+     * @brief getNumBufferedVideoFrames Can be called from both sides of the frame buffer without a lock. The result may
+     * be outdated right away, but the side that calls it only ever sees the amount change in its own favour.
+     */
+    int getNumBufferedVideoFrames();
+
+    /**
+     * @brief notifyBufferWaiters Wakes up waitForBuffers and setOutputSize. Only needed when the frame buffer just
+     * filled up or ended, they don't wait for each single frame.
+     */
+    void notifyBufferWaiters();
+
+    /**
+     * @brief wakeIfBufferWasFull Wakes the decoding after the render thread took frames from the frame buffer, when the
+     * frame buffer was full before. Never waits for the decoding.
+     * @param previousRead The read count before the frames were taken.
+     */
+    void wakeIfBufferWasFull(unsigned int previousRead);
+
+    /**
+     * @brief openAudio Opens the audio codec of audioStreamIndex, and sets up the resampler and the ring buffer.
+     */
+    void openAudio();
+
+    /**
+     * @brief discardUnusedStreams Makes the demuxer skip the packets of all streams that are not decoded.
+     */
+    void discardUnusedStreams();
+
+    virtual bool needsDecoding();
+    virtual int getDecodePriority();
+    virtual double getDecodeLead();
+
+    /**
+     * @brief decodeStep Run by a worker of the DecodeScheduler, decodes the next frame into the frame buffer.
+     */
+    virtual void decodeStep();
+
+    /**
+     * @brief runAudio Run by the audio thread, keeps the audio ring buffer filled with decoded audio.
+     */
+    void runAudio();
+
+    /**
+     * @brief updateFrameSkipping Compares the newest decoded frame to the playback time, and makes the video codec skip
+     * work when the decoder falls behind, or stop skipping when it caught up. Should be called by the decoding thread
+     * with the frame buffer lock held.
+     */
+    void updateFrameSkipping();
+    void applyFrameSkipping(int level);
+
+    /**
+     * @brief applyConfig Validates the given config and takes over its values. Used by the loadFile functions.
+     */
+    void applyConfig(const VideoDecoderConfig* config);
 
     /**
      * @brief loadContainer Used by the loadFile functions, which setup a single input method, and then call
      * this to load the shared info.
      */
-    void loadContainer(VideoBufferInfo* bufferInfo);
+    void loadContainer(int pixelFormat, VideoBufferInfo* bufferInfo);
 private:
     AVFormatContext* formatContext;
     AVCodecContext* videoCodecContext;
@@ -146,31 +470,126 @@ private:
     //Don't do any cleanup for this. It does not own the data that is pointed to!
     void* customFileBufferFuncData;
     FillFileBufferFunc fillFileBufferFunc;
+    SeekFileBufferFunc seekFileBufferFunc;
     CleanupFunc cleanupFunc;
 
+    int numBufferedFrames;
+    int ioBufferSize;
+    int numDecodeThreads;
+    int numQueuedPackets;
     u_int8_t* videoBuffer;
+    int videoBufferSize;
+    //The size of the memory behind videoBuffer, which is larger than videoBufferSize when the memory is reused.
+    int videoBufferCapacity;
+    //Set when the frame buffer is handed to the next decoder through this handle, instead of being freed.
+    RetainedVideoBuffer* videoBufferRetainer;
+    //Memory of a previous decoder, used as frame buffer if it is large enough.
+    u_int8_t* reusableVideoBuffer;
+    int reusableVideoBufferSize;
     int videoFrameSize;
-    double videoTimestamps[VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES];
-    AVFrame* rgbFrames[VIDEOPLAYER_VIDEO_NUM_BUFFERED_FRAMES];
-    int videoCurrentBufferIndex;
-    int videoNumFrameBuffered;
+    PixelFormat outputPixelFormat;
+    //The output as requested by setOutputSize, 0 for the size of the video. Guarded by outputSizeMutex once loaded.
+    Mutex outputSizeMutex;
+    bool outputSizeRequested;
+    int requestedOutputWidth;
+    int requestedOutputHeight;
+    int requestedCropX;
+    int requestedCropY;
+    int requestedCropWidth;
+    int requestedCropHeight;
+    //The frame buffer the render thread reads from. It differs from videoBuffer after the output size changed, until
+    //the frames of the old size are all shown.
+    VideoBufferInfo shownVideoOutput;
+    //The frame buffer of the new size, and the write count of its first frame. Published by videoOutputSwitchPending.
+    VideoBufferInfo pendingVideoOutput;
+    unsigned int videoOutputSwitchCount;
+    bool videoOutputSwitchPending;
+    //The part of the decoded frames that is converted, and the size it is converted to.
+    int videoCropX;
+    int videoCropY;
+    int videoCropWidth;
+    int videoCropHeight;
+    int videoOutputWidth;
+    int videoOutputHeight;
+    double* videoTimestamps;
+    AVFrame** outputFrames;
+    //The frame buffer is a single producer, single consumer ring. The decoding step only advances the write count, the
+    //render thread only advances the read count, and both publish their count with release semantics. The counts keep
+    //increasing and wrap around, their difference is the amount of buffered frames. The frame before the read count
+    //is the one shown right now, so the decoder never fills more than numBufferedFrames - 1 frames.
+    unsigned int videoReadCount;
+    unsigned int videoWriteCount;
+    //The slot nextVideoFrameIndex returned last, only used by the render thread
+    int shownFrameIndex;
+    //Only used to wait for the frame buffer, neither side of the ring takes it for a single frame
     Mutex videoBufferMutex;
     CondVar videoBufferConditional;
     bool videoOutputEnded;
-    std::list<AVPacket> videoPackets;
+    PacketQueue videoPackets;
+    //Decoded frames before this timestamp are thrown away, used to decode forward to the position of a seek.
+    double videoSkipUntil;
+    bool videoThreadStopped;
+    //Added to the timestamps of decoded frames, so they keep increasing over loops.
+    double videoLoopOffset;
+    //Set while the video codec is drained at the end of a loop.
+    bool videoLoopDraining;
+    //Set when a decoding step gave up its worker, because the demuxer has to wait for the audio queue to make room.
+    bool videoWaitingForPackets;
+    //Only counted for the debug log, and only by the decoding step, which never runs concurrently with itself.
+    int numFramesDecoded;
+    //The playback time last given to dropLateVideoFrames, or -1 when playback did not start yet. Written by the render
+    //thread and read by the decoding step, so it is kept in microseconds and only accessed atomically.
+    int64_t presentationTimeMicros;
+    //The timestamp of the frame decoded last, in microseconds. Read by the scheduler, also only accessed atomically.
+    int64_t lastDecodedTimeMicros;
+    //0 decodes everything, 1 skips the loop filter, 2 skips non reference frames as well, 3 only decodes keyframes.
+    int frameSkipLevel;
 
-    char audioBuffer[VIDEOPLAYER_AUDIO_BUFFER_SIZE];
+    int audioBufferSize;
+    char* audioBuffer;
     char audioDecodingBuffer[(MAX_AUDIO_FRAME_SIZE * 3) / 2];
     int audioDecodedSize;
     int audioDecodedUsed;
-    std::list<AVPacket> audioPackets;
-    Mutex listMutex;
+    //Decoded audio (16 bit stereo), written by the audio thread and read by updateAudioBuffer.
+    RingBuffer audioRingBuffer;
+    AudioThread audioThread;
+    Mutex audioThreadMutex;
+    CondVar audioThreadConditional;
+    bool audioThreadStopped;
+    bool audioRingBufferFilled;
+    bool audioDecodingEnded;
+    double audioTimeBase;
+    //The timestamp of the audio that was decoded last
+    double audioDecodedTimestamp;
+    double audioSkipUntil;
+    double audioLoopOffset;
+    PacketQueue audioPackets;
+    //Guards reading from the container, and pushing to both packet queues.
+    Mutex demuxMutex;
+    AVPacket pendingPacket;
+    bool hasPendingPacket;
+    bool looping;
+    bool videoLoopMarkerPending;
+    bool audioLoopMarkerPending;
+    //The length of a loop in seconds, taken from the end of the last demuxed packet.
+    double loopDuration;
+    double demuxedEnd;
+    Mutex packetQueueMutex;
+    CondVar packetQueueConditional;
+    //Set while a seek waits for, or works on, the paused decoding threads.
+    bool seekRequested;
+    //Set once the decoder was handed to the DecodeScheduler.
+    bool scheduled;
+    int decodePriority;
+    bool audioThreadParked;
     int videoStreamIndex;
+    //The audio stream that is opened, -1 when there is none or it was disabled when loading.
     int audioStreamIndex;
-    double secPerKbBlock;
+    //The audio stream of the file, whether it is opened or not.
+    int foundAudioStreamIndex;
+    bool audioEnabled;
 
     bool fileLoaded;
     double timeBase;
-    double timestampOffset;
     bool firstVideoPacket;
 };
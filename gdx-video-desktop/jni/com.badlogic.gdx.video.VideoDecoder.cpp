@@ -1,60 +1,171 @@
 #include <com.badlogic.gdx.video.VideoDecoder.h>
 
-//@line:114
+//@line:263
 
 	 	#include "VideoDecoder.h"
+	 	#include "DecoderReaper.hpp"
 	 	#include "Utilities.h"
 
 	 	#include <stdexcept>
+	 	#include <pthread.h>
 
 	 	JavaVM* jvm = NULL;
 	 	JavaVMAttachArgs args;
 
 	 	struct FfMpegCustomFileReaderData {
-            jobject objectToCall;
-            jmethodID methodToCall;
+            jobject source;
+            jclass decoderClass;
+            jmethodID readMethod;
+            jmethodID seekMethod;
+            jmethodID positionMethod;
+            jmethodID sizeMethod;
+            jmethodID disposeMethod;
+            //A direct buffer over the block FFmpeg reads into, reused as long as FFmpeg uses the same block
+            jobject buffer;
+            u_int8_t* bufferAddress;
+            int bufferCapacity;
         };
 
-        static int ffmpegCustomFileReader(void* data, u_int8_t* buffer, int bufferSize) {
-            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
-            JNIEnv * env;
-		    // double check it's all ok
+        static pthread_key_t threadEnvKey;
+        static pthread_once_t threadEnvKeyOnce = PTHREAD_ONCE_INIT;
+
+        static void detachThread(void* env) {
+            jvm->DetachCurrentThread();
+        }
+
+        static void createThreadEnvKey() {
+            pthread_key_create(&threadEnvKey, detachThread);
+        }
+
+        //Returns an env for the calling thread. Native threads are attached on their first call, and stay attached
+        //until they end, since attaching costs far more than the read itself.
+        static JNIEnv* getThreadEnv() {
+            JNIEnv * env = NULL;
 		    int getEnvStat = jvm->GetEnv((void **)&env, JNI_VERSION_1_6);
 		    if (getEnvStat == JNI_EDETACHED) {
 		        logDebug("Not attached\n");
-		        if (jvm->AttachCurrentThread((void **) &env, NULL) != 0) {
+		        if (jvm->AttachCurrentThreadAsDaemon((void **) &env, &args) != 0) {
 		            logError("Failed to attach\n");
+		            return NULL;
 		        }
-		    } else if (getEnvStat == JNI_OK) {
-		        //
+		        pthread_once(&threadEnvKeyOnce, createThreadEnvKey);
+		        pthread_setspecific(threadEnvKey, env);
 		    } else if (getEnvStat == JNI_EVERSION) {
 		        logError("Unsupported version\n");
+		        return NULL;
 		    }
+		    return env;
+        }
+
+        static int ffmpegCustomFileReader(void* data, u_int8_t* buffer, int bufferSize) {
+            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
+            JNIEnv * env = getThreadEnv();
+            if (env == NULL) {
+                return -1;
+            }
+
+            //The threads stay attached, so nothing may be left behind as a local reference
+            if (customData->buffer == NULL || customData->bufferAddress != buffer || customData->bufferCapacity < bufferSize) {
+                if (customData->buffer != NULL) {
+                    env->DeleteGlobalRef(customData->buffer);
+                }
+                jobject directBuffer = env->NewDirectByteBuffer(buffer, bufferSize);
+                customData->buffer = env->NewGlobalRef(directBuffer);
+                env->DeleteLocalRef(directBuffer);
+                customData->bufferAddress = buffer;
+                customData->bufferCapacity = bufferSize;
+            }
 
-		jint integer = env->CallIntMethod(customData->objectToCall, customData->methodToCall, env->NewDirectByteBuffer(buffer, bufferSize));
+		    jint integer = env->CallStaticIntMethod(customData->decoderClass, customData->readMethod, customData->source, customData->buffer, bufferSize);
 
 		    if (env->ExceptionCheck()) {
 		        env->ExceptionDescribe();
+		        integer = -1;
 		    }
 
-		    jvm->DetachCurrentThread();
             logDebug("Size %d on %p\n", bufferSize, buffer);
             return integer;
         }
 
+        static int64_t ffmpegCustomFileSeeker(void* data, int64_t offset, int whence) {
+            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
+            JNIEnv * env = getThreadEnv();
+            if (env == NULL) {
+                return -1;
+            }
+
+            jlong position = -1;
+            switch(whence) {
+            case AVSEEK_SIZE:
+                position = env->CallLongMethod(customData->source, customData->sizeMethod);
+                break;
+            case SEEK_SET:
+                position = offset;
+                break;
+            case SEEK_CUR:
+                position = env->CallLongMethod(customData->source, customData->positionMethod) + offset;
+                break;
+            case SEEK_END: {
+                jlong size = env->CallLongMethod(customData->source, customData->sizeMethod);
+                position = size >= 0 ? size + offset : -1;
+                break;
+            }
+            }
+            if (whence != AVSEEK_SIZE && position >= 0 && !env->ExceptionCheck()) {
+                if (!env->CallBooleanMethod(customData->source, customData->seekMethod, position)) {
+                    position = -1;
+                }
+            }
+
+		    if (env->ExceptionCheck()) {
+		        env->ExceptionDescribe();
+		        position = -1;
+		    }
+            logDebug("Seek to %lld (%d), now at %lld\n", (long long)offset, whence, (long long)position);
+            return position;
+        }
+
+        static jobject newVideoDecoderBuffers(JNIEnv* env, const VideoBufferInfo& bufferInfo) {
+            jobject videoBuffer = NULL;
+            jobject audioBuffer = NULL;
+            if(bufferInfo.videoBuffer != NULL && bufferInfo.videoBufferSize > 0) {
+                videoBuffer = env->NewDirectByteBuffer(bufferInfo.videoBuffer, bufferInfo.videoBufferSize);
+            }
+            if(bufferInfo.audioBuffer != NULL && bufferInfo.audioBufferSize > 0) {
+                audioBuffer = env->NewDirectByteBuffer(bufferInfo.audioBuffer, bufferInfo.audioBufferSize);
+            }
+
+            jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$VideoDecoderBuffers");
+            if(cls == NULL) {
+                logError("[newVideoDecoderBuffers] Could not find VideoDecoderBuffers class");
+                return NULL;
+            }
+            jmethodID constructor = env->GetMethodID(cls, "<init>", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;IIIIIII)V");
+            return env->NewObject(cls, constructor, videoBuffer, audioBuffer, bufferInfo.videoFrameSize, bufferInfo.videoWidth, bufferInfo.videoHeight, bufferInfo.videoSourceWidth, bufferInfo.videoSourceHeight, bufferInfo.audioChannels, bufferInfo.audioSampleRate);
+        }
+
         static void customReaderDataCleanup(void* data) {
             FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
-//            customData->env->DeleteGlobalRef(customData->objectToCall);
-//            jvm->DetachCurrentThread();
-//            customData->env = NULL;
-//            customData->objectToCall = NULL;
-//            customData->methodToCall = NULL;
+            JNIEnv * env = getThreadEnv();
+            if (env != NULL) {
+                //Called once the decoder no longer reads, so the source can be closed
+                env->CallVoidMethod(customData->source, customData->disposeMethod);
+                if (env->ExceptionCheck()) {
+                    env->ExceptionDescribe();
+                }
+                env->DeleteGlobalRef(customData->source);
+                env->DeleteGlobalRef(customData->decoderClass);
+                if (customData->buffer != NULL) {
+                    env->DeleteGlobalRef(customData->buffer);
+                }
+            }
+            delete customData;
         }
 
-	 JNIEXPORT jlong JNICALL Java_com_badlogic_gdx_video_VideoDecoder_init(JNIEnv* env, jobject object) {
+	JNIEXPORT jlong JNICALL Java_com_badlogic_gdx_video_VideoDecoder_init(JNIEnv* env, jobject object) {
 
 
-//@line:170
+//@line:431
 
 
 		if(jvm == NULL) {
@@ -70,10 +181,10 @@
 
 }
 
-static inline jobject wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadStream
-(JNIEnv* env, jobject object, jobject decodingObject, jstring obj_methodName, char* methodName) {
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadStreamNative(JNIEnv* env, jobject object, jobject source, jboolean seekable, jint pixelFormat, jint numBufferedFrames, jint audioBufferSize, jint ioBufferSize, jint numQueuedPackets, jint numDecodeThreads) {
 
-//@line:192
+
+//@line:524
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		try {
@@ -81,32 +192,67 @@ static inline jobject wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadStrea
             memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
             FfMpegCustomFileReaderData* data = new FfMpegCustomFileReaderData();
             memset(data, 0, sizeof(FfMpegCustomFileReaderData));
-            data->objectToCall = env->NewGlobalRef(decodingObject);
-            jclass clazz = env->GetObjectClass(data->objectToCall);
-            data->methodToCall = env->GetMethodID(clazz, methodName, "(Ljava/nio/ByteBuffer;)I");
-            if(data->methodToCall == NULL) {
+            jclass clazz = env->FindClass("com/badlogic/gdx/video/VideoSource");
+            if(source == NULL || clazz == NULL) {
                 delete data;
-                throw std::invalid_argument("Supplied method name invalid! Is it having the correct signature?");
+                throw std::invalid_argument("A VideoSource should be supplied!");
             }
+            data->source = env->NewGlobalRef(source);
+            jclass decoderClass = env->GetObjectClass(object);
+            data->decoderClass = (jclass)env->NewGlobalRef(decoderClass);
+            data->readMethod = env->GetStaticMethodID(decoderClass, "readSource", "(Lcom/badlogic/gdx/video/VideoSource;Ljava/nio/ByteBuffer;I)I");
+            data->seekMethod = env->GetMethodID(clazz, "seek", "(J)Z");
+            data->positionMethod = env->GetMethodID(clazz, "position", "()J");
+            data->sizeMethod = env->GetMethodID(clazz, "size", "()J");
+            data->disposeMethod = env->GetMethodID(env->FindClass("com/badlogic/gdx/utils/Disposable"), "dispose", "()V");
+
+            VideoDecoderConfig config;
+            config.numBufferedFrames = numBufferedFrames;
+            config.audioBufferSize = audioBufferSize;
+            config.ioBufferSize = ioBufferSize;
+            config.numQueuedPackets = numQueuedPackets;
+            config.numDecodeThreads = numDecodeThreads;
+
+            pointer->loadFile(ffmpegCustomFileReader, seekable ? ffmpegCustomFileSeeker : NULL, data, customReaderDataCleanup, pixelFormat, &config, &bufferInfo);
+            return newVideoDecoderBuffers(env, bufferInfo);
+		} catch(std::runtime_error e) {
+			logDebug("Caught exception \n");
+			jclass clazz = env->FindClass("java/lang/Exception");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return 0;
+			}
+			env->ThrowNew(clazz, e.what());
+		} catch(std::invalid_argument e) {
+			jclass clazz = env->FindClass("java/lang/IllegalArgumentException");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return 0;
+			}
+			env->ThrowNew(clazz, e.what());
+		}
+		return 0;
+	 
 
-            pointer->loadFile(ffmpegCustomFileReader, data, customReaderDataCleanup, &bufferInfo);
-            jobject videoBuffer = NULL;
-            jobject audioBuffer = NULL;
-            jobject customIOBuffer = NULL;
-            if(bufferInfo.videoBuffer != NULL && bufferInfo.videoBufferSize > 0) {
-                videoBuffer = env->NewDirectByteBuffer(bufferInfo.videoBuffer, bufferInfo.videoBufferSize);
-            }
-            if(bufferInfo.audioBuffer != NULL && bufferInfo.audioBufferSize > 0) {
-                audioBuffer = env->NewDirectByteBuffer(bufferInfo.audioBuffer, bufferInfo.audioBufferSize);
-            }
+}
 
-            jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$VideoDecoderBuffers");
-            if(cls == NULL) {
-                logError("[wrapped_Java_com_badlogic_gdx_videoVideoDecoder_loadFile] Could not find VideoDecoderBuffers class");
-                return NULL;
-            }
-            jmethodID constructor = env->GetMethodID(cls, "<init>", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;IIII)V");
-            return env->NewObject(cls, constructor, videoBuffer, audioBuffer, bufferInfo.videoWidth, bufferInfo.videoHeight, bufferInfo.audioChannels, bufferInfo.audioSampleRate);
+static inline jobject wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadFileNative
+(JNIEnv* env, jobject object, jstring obj_path, jint pixelFormat, jint numBufferedFrames, jint audioBufferSize, jint ioBufferSize, jint numQueuedPackets, jint numDecodeThreads, char* path) {
+
+//@line:582
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		try {
+			VideoBufferInfo bufferInfo;
+            memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
+
+            VideoDecoderConfig config;
+            config.numBufferedFrames = numBufferedFrames;
+            config.audioBufferSize = audioBufferSize;
+            config.ioBufferSize = ioBufferSize;
+            config.numQueuedPackets = numQueuedPackets;
+            config.numDecodeThreads = numDecodeThreads;
+
+            pointer->loadFile(path, pixelFormat, &config, &bufferInfo);
+            return newVideoDecoderBuffers(env, bufferInfo);
 		} catch(std::runtime_error e) {
 			logDebug("Caught exception \n");
 			jclass clazz = env->FindClass("java/lang/Exception");
@@ -125,25 +271,48 @@ static inline jobject wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadStrea
 	 
 }
 
-JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadStream(JNIEnv* env, jobject object, jobject decodingObject, jstring obj_methodName) {
-	char* methodName = (char*)env->GetStringUTFChars(obj_methodName, 0);
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadFileNative(JNIEnv* env, jobject object, jstring obj_path, jint pixelFormat, jint numBufferedFrames, jint audioBufferSize, jint ioBufferSize, jint numQueuedPackets, jint numDecodeThreads) {
+	char* path = (char*)env->GetStringUTFChars(obj_path, 0);
 
-	jobject JNI_returnValue = wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadStream(env, object, decodingObject, obj_methodName, methodName);
+	jobject JNI_returnValue = wrapped_Java_com_badlogic_gdx_video_VideoDecoder_loadFileNative(env, object, obj_path, pixelFormat, numBufferedFrames, audioBufferSize, ioBufferSize, numQueuedPackets, numDecodeThreads, path);
 
-	env->ReleaseStringUTFChars(obj_methodName, methodName);
+	env->ReleaseStringUTFChars(obj_path, path);
 
 	return JNI_returnValue;
 }
 
-JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFrame(JNIEnv* env, jobject object) {
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFrameIndexNative(JNIEnv* env, jobject object) {
 
 
-//@line:246
+//@line:648
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
-		u_int8_t* buffer = pointer->nextVideoFrame();
+		return pointer->nextVideoFrameIndex();
+	 
+
+}
+
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_takeVideoOutput(JNIEnv* env, jobject object) {
+
+
+//@line:653
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		VideoBufferInfo bufferInfo;
+		memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
+		pointer->takeVideoOutput(&bufferInfo);
+		return newVideoDecoderBuffers(env, bufferInfo);
+	 
+
+}
+
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_dropLateVideoFrames(JNIEnv* env, jobject object, jdouble playbackTime) {
+
 
-		return (buffer == NULL) ? NULL : env->NewDirectByteBuffer(buffer, pointer->getVideoFrameSize());
+//@line:680
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->dropLateVideoFrames(playbackTime);
 	 
 
 }
@@ -151,7 +320,7 @@ JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFram
 JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_updateAudioBuffer(JNIEnv* env, jobject object) {
 
 
-//@line:257
+//@line:691
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		pointer->updateAudioBuffer();
@@ -159,28 +328,192 @@ JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_updateAudioBuffe
 
 }
 
+static inline jint wrapped_Java_com_badlogic_gdx_video_VideoDecoder_readAudioNative
+(JNIEnv* env, jclass clazz, jlong nativePointer, jbyteArray obj_buffer, jint offset, jint length, char* buffer) {
+
+//@line:718
+
+		return ((VideoDecoder*)nativePointer)->readAudio(buffer + offset, length);
+	 
+}
+
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_readAudioNative(JNIEnv* env, jclass clazz, jlong nativePointer, jbyteArray obj_buffer, jint offset, jint length) {
+	char* buffer = (char*)env->GetPrimitiveArrayCritical(obj_buffer, 0);
+
+	jint JNI_returnValue = wrapped_Java_com_badlogic_gdx_video_VideoDecoder_readAudioNative(env, clazz, nativePointer, obj_buffer, offset, length, buffer);
+
+	env->ReleasePrimitiveArrayCritical(obj_buffer, buffer, 0);
+
+	return JNI_returnValue;
+}
+
 JNIEXPORT jdouble JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getCurrentFrameTimestamp(JNIEnv* env, jobject object) {
 
 
-//@line:267
+//@line:729
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		return pointer->getCurrentFrameTimestamp();
 	 
 
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_seek(JNIEnv* env, jobject object, jlong positionMillis) {
+
+
+//@line:744
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		try {
+			pointer->seek(positionMillis);
+		} catch(std::runtime_error e) {
+			jclass clazz = env->FindClass("java/lang/Exception");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return;
+			}
+			env->ThrowNew(clazz, e.what());
+		}
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setOutputSize(JNIEnv* env, jobject object, jint width, jint height, jint cropX, jint cropY, jint cropWidth, jint cropHeight) {
+
+
+//@line:773
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setOutputSize(width, height, cropX, cropY, cropWidth, cropHeight);
+	 
+
+}
+
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setAudioEnabledNative(JNIEnv* env, jobject object, jboolean enabled) {
+
+
+//@line:797
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		VideoBufferInfo bufferInfo;
+		memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
+		if(!pointer->setAudioEnabled(enabled, &bufferInfo)) {
+			return NULL;
+		}
+		return newVideoDecoderBuffers(env, bufferInfo);
+	 
+
+}
+
+JNIEXPORT jlong JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getDuration(JNIEnv* env, jobject object) {
+
+
+//@line:810
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->getDuration();
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setLooping(JNIEnv* env, jobject object, jboolean looping) {
+
+
+//@line:821
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setLooping(looping);
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setDecodePriority(JNIEnv* env, jobject object, jint priority) {
+
+
+//@line:832
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setDecodePriority(priority);
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setMaxDecodeWorkers(JNIEnv* env, jclass clazz, jint maxWorkers) {
+
+
+//@line:843
+
+		DecodeScheduler::getInstance()->setMaxWorkers(maxWorkers);
+	 
+
+}
+
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getMaxDecodeWorkers(JNIEnv* env, jclass clazz) {
+
+
+//@line:851
+
+		return DecodeScheduler::getInstance()->getMaxWorkers();
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_reuseVideoBuffer(JNIEnv* env, jobject object, jlong handle) {
+
+
+//@line:855
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		int size = 0;
+		u_int8_t* buffer = ((RetainedVideoBuffer*)handle)->take(&size);
+		if(buffer != NULL) {
+		    pointer->reuseVideoBuffer(buffer, size);
+		}
+	 
+
+}
+
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_retainFrameMemory(JNIEnv* env, jobject object) {
+
+
+//@line:864
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		RetainedVideoBuffer* handle = pointer->retainVideoBuffer();
+		if(handle == NULL) {
+		    return NULL;
+		}
+		jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$FrameMemory");
+		if(cls == NULL) {
+		    logError("[retainFrameMemory] Could not find FrameMemory class");
+		    handle->release();
+		    return NULL;
+		}
+		jmethodID constructor = env->GetMethodID(cls, "<init>", "(J)V");
+		return env->NewObject(cls, constructor, (jlong)handle);
+	 
+
+}
+
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_releaseFrameMemory(JNIEnv* env, jclass clazz, jlong handle) {
+
+
+//@line:880
+
+		((RetainedVideoBuffer*)handle)->release();
+	 
+
 }
 
 JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_disposeNative(JNIEnv* env, jobject object) {
 
 
-//@line:275
+//@line:887
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
-		FfMpegCustomFileReaderData* data = (FfMpegCustomFileReaderData*)pointer->getCustomFileBufferFuncData();
-        if(data != NULL) {
-            delete data;
-        }
-		delete pointer;
+		//Joining the decoding threads and closing the codecs can take a while, so it is done by the reaper. The
+		//decoder may still read from the stream until it is deleted, the stream is released by its cleanup function.
+		pointer->stop();
+		DecoderReaper::getInstance()->add(pointer);
 	 
 
 }
@@ -188,11 +521,22 @@ JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_disposeNative(JN
 JNIEXPORT jboolean JNICALL Java_com_badlogic_gdx_video_VideoDecoder_isBuffered(JNIEnv* env, jobject object) {
 
 
-//@line:287
+//@line:898
 
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		return pointer->isBuffered();
-	 
+	  
+
+}
+
+JNIEXPORT jboolean JNICALL Java_com_badlogic_gdx_video_VideoDecoder_isReadyToPlay(JNIEnv* env, jobject object) {
+
+
+//@line:907
+
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->isReadyToPlay();
+	  
 
 }
 
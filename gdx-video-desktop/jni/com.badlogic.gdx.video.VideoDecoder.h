@@ -7,6 +7,14 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef com_badlogic_gdx_video_VideoDecoder_PIXEL_FORMAT_RGB24
+#define com_badlogic_gdx_video_VideoDecoder_PIXEL_FORMAT_RGB24 0L
+#undef com_badlogic_gdx_video_VideoDecoder_PIXEL_FORMAT_YUV420P
+#define com_badlogic_gdx_video_VideoDecoder_PIXEL_FORMAT_YUV420P 1L
+#undef com_badlogic_gdx_video_VideoDecoder_FRAME_UNCHANGED
+#define com_badlogic_gdx_video_VideoDecoder_FRAME_UNCHANGED -2L
+#undef com_badlogic_gdx_video_VideoDecoder_FRAME_OUTPUT_CHANGED
+#define com_badlogic_gdx_video_VideoDecoder_FRAME_OUTPUT_CHANGED -3L
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
  * Method:    init
@@ -17,20 +25,44 @@ JNIEXPORT jlong JNICALL Java_com_badlogic_gdx_video_VideoDecoder_init
 
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
- * Method:    loadStream
- * Signature: (Ljava/lang/Object;Ljava/lang/String;)Lcom/badlogic/gdx/video/VideoDecoder/VideoDecoderBuffers;
+ * Method:    loadStreamNative
+ * Signature: (Lcom/badlogic/gdx/video/VideoSource;ZIIIIII)Lcom/badlogic/gdx/video/VideoDecoder/VideoDecoderBuffers;
  */
-JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadStream
-  (JNIEnv *, jobject, jobject, jstring);
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadStreamNative
+  (JNIEnv *, jobject, jobject, jboolean, jint, jint, jint, jint, jint, jint);
 
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
- * Method:    nextVideoFrame
- * Signature: ()Ljava/nio/ByteBuffer;
+ * Method:    loadFileNative
+ * Signature: (Ljava/lang/String;IIIIII)Lcom/badlogic/gdx/video/VideoDecoder/VideoDecoderBuffers;
  */
-JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFrame
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_loadFileNative
+  (JNIEnv *, jobject, jstring, jint, jint, jint, jint, jint, jint);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    nextVideoFrameIndexNative
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFrameIndexNative
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    takeVideoOutput
+ * Signature: ()Lcom/badlogic/gdx/video/VideoDecoder/VideoDecoderBuffers;
+ */
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_takeVideoOutput
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    dropLateVideoFrames
+ * Signature: (D)I
+ */
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_dropLateVideoFrames
+  (JNIEnv *, jobject, jdouble);
+
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
  * Method:    updateAudioBuffer
@@ -39,6 +71,14 @@ JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_nextVideoFram
 JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_updateAudioBuffer
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    readAudioNative
+ * Signature: (J[BII)I
+ */
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_readAudioNative
+  (JNIEnv *, jclass, jlong, jbyteArray, jint, jint);
+
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
  * Method:    getCurrentFrameTimestamp
@@ -47,6 +87,94 @@ JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_updateAudioBuffe
 JNIEXPORT jdouble JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getCurrentFrameTimestamp
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    seek
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_seek
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    setOutputSize
+ * Signature: (IIIIII)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setOutputSize
+  (JNIEnv *, jobject, jint, jint, jint, jint, jint, jint);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    setAudioEnabledNative
+ * Signature: (Z)Lcom/badlogic/gdx/video/VideoDecoder/VideoDecoderBuffers;
+ */
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setAudioEnabledNative
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    getDuration
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getDuration
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    setLooping
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setLooping
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    setDecodePriority
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setDecodePriority
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    setMaxDecodeWorkers
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_setMaxDecodeWorkers
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    getMaxDecodeWorkers
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_badlogic_gdx_video_VideoDecoder_getMaxDecodeWorkers
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    reuseVideoBuffer
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_reuseVideoBuffer
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    retainFrameMemory
+ * Signature: ()Lcom/badlogic/gdx/video/VideoDecoder/FrameMemory;
+ */
+JNIEXPORT jobject JNICALL Java_com_badlogic_gdx_video_VideoDecoder_retainFrameMemory
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    releaseFrameMemory
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_releaseFrameMemory
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     com_badlogic_gdx_video_VideoDecoder
  * Method:    disposeNative
@@ -63,6 +191,14 @@ JNIEXPORT void JNICALL Java_com_badlogic_gdx_video_VideoDecoder_disposeNative
 JNIEXPORT jboolean JNICALL Java_com_badlogic_gdx_video_VideoDecoder_isBuffered
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_badlogic_gdx_video_VideoDecoder
+ * Method:    isReadyToPlay
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_badlogic_gdx_video_VideoDecoder_isReadyToPlay
+  (JNIEnv *, jobject);
+
 #ifdef __cplusplus
 }
 #endif
@@ -78,3 +214,14 @@ extern "C" {
 }
 #endif
 #endif
+/* Header for class com_badlogic_gdx_video_VideoDecoder_FrameMemory */
+
+#ifndef _Included_com_badlogic_gdx_video_VideoDecoder_FrameMemory
+#define _Included_com_badlogic_gdx_video_VideoDecoder_FrameMemory
+#ifdef __cplusplus
+extern "C" {
+#endif
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,55 @@
+package com.badlogic.gdx.video;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a video that is already in memory, for example one that was decrypted or downloaded. The data between the
+ * position and the limit of the given buffer is the video. The buffer is not copied, and should not be changed while
+ * the video plays.
+ */
+public class ByteBufferVideoSource implements VideoSource {
+    private final ByteBuffer data;
+
+    public ByteBufferVideoSource(ByteBuffer data) {
+        this.data = data.slice();
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) {
+        if (!data.hasRemaining()) return -1;
+
+        int numBytes = Math.min(buffer.remaining(), data.remaining());
+        ByteBuffer source = data.duplicate();
+        source.limit(source.position() + numBytes);
+        buffer.put(source);
+        data.position(data.position() + numBytes);
+        return numBytes;
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public boolean seek(long position) {
+        if (position < 0 || position > data.limit()) return false;
+
+        data.position((int)position);
+        return true;
+    }
+
+    @Override
+    public long position() {
+        return data.position();
+    }
+
+    @Override
+    public long size() {
+        return data.limit();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
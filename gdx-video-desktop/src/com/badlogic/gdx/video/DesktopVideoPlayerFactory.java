@@ -14,4 +14,24 @@ public class DesktopVideoPlayerFactory implements VideoPlayerFactory {
         return new VideoPlayerDesktop(mesh, shader);
     }
 
+    @Override
+    public VideoPlayer createVideoPlayer(VideoDecoderConfig config) throws VideoPlayerInitException {
+        return new VideoPlayerDesktop(config);
+    }
+
+    @Override
+    public VideoPlayer createVideoPlayer(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader)
+            throws VideoPlayerInitException {
+        return new VideoPlayerDesktop(config, mesh, shader);
+    }
+
+    @Override
+    public boolean recycleVideoPlayer(VideoPlayer videoPlayer) {
+        if (!(videoPlayer instanceof VideoPlayerDesktop)) {
+            return false;
+        }
+        ((VideoPlayerDesktop)videoPlayer).recycle();
+        return true;
+    }
+
 }
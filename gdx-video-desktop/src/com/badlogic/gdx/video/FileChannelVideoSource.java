@@ -0,0 +1,83 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a video from a file on disk. Files up to 2 GB are memory mapped, so reading and seeking cost no system
+ * calls. Larger files are read through the channel.
+ */
+public class FileChannelVideoSource implements VideoSource {
+    private final FileChannel channel;
+    private final long size;
+    private final MappedByteBuffer mapped;
+    private long position;
+
+    public FileChannelVideoSource(File file) {
+        try {
+            channel = new RandomAccessFile(file, "r").getChannel();
+            size = channel.size();
+            mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error opening video file: " + file, e);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        if (position >= size) return -1;
+
+        if (mapped == null) {
+            int numBytes = channel.read(buffer, position);
+            if (numBytes > 0) {
+                position += numBytes;
+            }
+            return numBytes;
+        }
+        int numBytes = (int)Math.min(buffer.remaining(), size - position);
+        ByteBuffer source = mapped.duplicate();
+        source.position((int)position);
+        source.limit((int)position + numBytes);
+        buffer.put(source);
+        position += numBytes;
+        return numBytes;
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public boolean seek(long position) {
+        if (position < 0 || position > size) return false;
+
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error closing video file", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a video from a file that can only be streamed, like a classpath resource or an entry in a jar or zip. Moving
+ * forward skips through the stream, moving back opens the file again and skips from its start. This makes it
+ * seekable, though seeking back costs more than with a {@link FileChannelVideoSource}.
+ */
+public class FileHandleVideoSource implements VideoSource {
+    private final FileHandle file;
+    private final long size;
+    private InputStreamVideoSource source;
+
+    public FileHandleVideoSource(FileHandle file) {
+        this.file = file;
+        long length = file.length();
+        this.size = length > 0 ? length : -1;
+        open();
+    }
+
+    private void open() {
+        InputStream stream = file.read();
+        source = new InputStreamVideoSource(stream, size);
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        return source.read(buffer);
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public boolean seek(long position) throws IOException {
+        if (position < 0 || (size >= 0 && position > size)) return false;
+
+        if (position < source.position()) {
+            source.dispose();
+            open();
+        }
+        return source.seek(position);
+    }
+
+    @Override
+    public long position() {
+        return source.position();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void dispose() {
+        source.dispose();
+    }
+}
@@ -0,0 +1,73 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a video from a stream, which can only move forward. Seeking in the video is not possible, but the video can
+ * still be played, and looped when the container allows it.
+ */
+public class InputStreamVideoSource implements VideoSource {
+    private final InputStream stream;
+    private final long size;
+    private final byte[] bytes = new byte[4096];
+    private long position;
+
+    /**
+     * @param size The size of the video in bytes, or -1 when it is not known.
+     */
+    public InputStreamVideoSource(InputStream stream, long size) {
+        this.stream = stream;
+        this.size = size;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        int numBytes = stream.read(bytes, 0, Math.min(bytes.length, buffer.remaining()));
+        if (numBytes > 0) {
+            buffer.put(bytes, 0, numBytes);
+            position += numBytes;
+        }
+        return numBytes;
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return false;
+    }
+
+    /**
+     * Can only skip forward.
+     */
+    @Override
+    public boolean seek(long position) throws IOException {
+        while (this.position < position) {
+            long skipped = stream.skip(position - this.position);
+            if (skipped <= 0) return false;
+            this.position += skipped;
+        }
+        return this.position == position;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error closing video stream", e);
+        }
+    }
+}
@@ -16,11 +16,10 @@
 
 package com.badlogic.gdx.video;
 
-import java.nio.ByteBuffer;
-
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.lwjgl3.audio.OpenALAudio;
 import com.badlogic.gdx.backends.lwjgl3.audio.OpenALMusic;
+import com.badlogic.gdx.utils.LongArray;
 
 /**
  * The RawMusic class extends OpenAlMusic, and retrieves it's audio from a VideoDecoder instance.
@@ -30,36 +29,69 @@ import com.badlogic.gdx.backends.lwjgl3.audio.OpenALMusic;
 final class RawMusic extends OpenALMusic {
 
     private final VideoDecoder decoder;
-    private final ByteBuffer backBuffer;
+    private final int bytesPerSecond;
+    /** The amount of bytes handed to OpenAL since playback started. */
+    private long bytesRead;
+    /** Where silence was handed to OpenAL, as pairs of the start and the end of it in {@link #bytesRead}. */
+    private final LongArray silences = new LongArray();
+    /** The silence that was completely played, and removed from {@link #silences}. */
+    private long playedSilence;
 
-    public RawMusic(VideoDecoder decoder, ByteBuffer buffer, int channels, int sampleRate) {
+    public RawMusic(VideoDecoder decoder, int channels, int sampleRate) {
         super((OpenALAudio)Gdx.audio, null);
 
         this.decoder = decoder;
-        this.backBuffer = buffer;
+        // 16 bit samples.
+        bytesPerSecond = channels * 2 * sampleRate;
 
         setup(channels, sampleRate);
     }
 
+    /**
+     * Fills a whole OpenAL buffer with a single call into the decoder. When decoding could not keep up, the buffer
+     * ends with silence, which is remembered so {@link #getVideoPosition()} can leave it out.
+     */
     @Override
     public int read(byte[] buffer) {
-        int sizeNeeded = buffer.length;
-        int currentIndex = 0;
+        int silence = decoder.readAudio(buffer, 0, buffer.length);
+        bytesRead += buffer.length;
+        if (silence > 0) {
+            silences.add(bytesRead - silence);
+            silences.add(bytesRead);
+        }
+        return buffer.length;
+    }
 
-        while (sizeNeeded > 0) {
-            if (backBuffer.remaining() > 0) {
-                int numBytes = Math.min(backBuffer.remaining(), sizeNeeded);
-                backBuffer.get(buffer, currentIndex, numBytes);
-                currentIndex += numBytes;
-                sizeNeeded -= numBytes;
-            } else {
-                // We need to fill the buffer;
-                backBuffer.rewind();
-                decoder.updateAudioBuffer();
-            }
+    /**
+     * @return The position in seconds like {@link #getPosition()}, but without the silence that was played because
+     *         decoding could not keep up. That silence is no part of the video, so the video stays in sync with the
+     *         audio by following this.
+     */
+    public float getVideoPosition() {
+        float position = getPosition();
+        long played = (long)(position * bytesPerSecond);
+        while (silences.size > 0 && silences.get(1) <= played) {
+            playedSilence += silences.get(1) - silences.get(0);
+            silences.removeIndex(0);
+            silences.removeIndex(0);
         }
+        long silence = playedSilence;
+        if (silences.size > 0 && silences.get(0) < played) {
+            // The silence that is playing right now.
+            silence += played - silences.get(0);
+        }
+        return position - (float)silence / bytesPerSecond;
+    }
 
-        return buffer.length;
+    /**
+     * Also forgets the silence that was played, since playing starts from position 0 again.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        bytesRead = 0;
+        silences.clear();
+        playedSilence = 0;
     }
 
     @Override
@@ -16,6 +16,7 @@
 
 package com.badlogic.gdx.video;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.badlogic.gdx.utils.Disposable;
@@ -27,30 +28,71 @@ import com.badlogic.gdx.utils.Disposable;
  * @author Rob Bogie <rob.bogie@codepoke.net>
  */
 public class VideoDecoder implements Disposable {
+    /**
+     * Decoded frames are provided as packed RGB888, a single plane of 3 bytes per pixel.
+     */
+    public static final int PIXEL_FORMAT_RGB24 = 0;
+    /**
+     * Decoded frames are provided as planar YUV 4:2:0. A frame consists of the full size Y plane, followed by
+     * the U and V planes which are half the width and half the height (rounded up) of the video.
+     */
+    public static final int PIXEL_FORMAT_YUV420P = 1;
+
+    /**
+     * Returned by {@link #nextVideoFrameIndex()} when no new frame is decoded yet. The frame that was returned last
+     * stays the current one, so it doesn't have to be uploaded again.
+     */
+    public static final int FRAME_UNCHANGED = -2;
+
+    // Returned by the native nextVideoFrameIndex when the next frame is in a new frame buffer, see setOutputSize.
+    private static final int FRAME_OUTPUT_CHANGED = -3;
+
     /**
      * This value should not be used or altered in any way. It is used to store the pointer to the native
      * object, for which this object is a wrapper.
      */
     private long nativePointer;
 
+    private VideoDecoderBuffers buffers;
+
     public static class VideoDecoderBuffers {
         private final ByteBuffer videoBuffer;
+        private final ByteBuffer[] videoFrames;
         private final ByteBuffer audioBuffer;
+        private final int videoFrameSize;
         private final int videoWidth;
         private final int videoHeight;
+        private final int videoSourceWidth;
+        private final int videoSourceHeight;
         private final int audioChannels;
         private final int audioSampleRate;
 
         // If constructor parameters are changed, please also update the native code to call the new
         // constructor!
-        private VideoDecoderBuffers(ByteBuffer videoBuffer, ByteBuffer audioBuffer, int videoWidth,
-                int videoHeight, int audioChannels, int audioSampleRate) {
+        private VideoDecoderBuffers(ByteBuffer videoBuffer, ByteBuffer audioBuffer, int videoFrameSize,
+                int videoWidth, int videoHeight, int videoSourceWidth, int videoSourceHeight, int audioChannels,
+                int audioSampleRate) {
             this.videoBuffer = videoBuffer;
             this.audioBuffer = audioBuffer;
+            this.videoFrameSize = videoFrameSize;
             this.videoWidth = videoWidth;
             this.videoHeight = videoHeight;
+            this.videoSourceWidth = videoSourceWidth;
+            this.videoSourceHeight = videoSourceHeight;
             this.audioChannels = 2; // Workaround for issue #???, decoder always uses 2 channels regardless of source
             this.audioSampleRate = audioSampleRate;
+
+            // Slice the frame buffer once, so no buffers have to be created while playing.
+            int numFrames = videoBuffer != null ? videoBuffer.capacity() / videoFrameSize : 0;
+            videoFrames = new ByteBuffer[numFrames];
+            for (int i = 0; i < numFrames; i++) {
+                videoBuffer.limit((i + 1) * videoFrameSize);
+                videoBuffer.position(i * videoFrameSize);
+                videoFrames[i] = videoBuffer.slice();
+            }
+            if (videoBuffer != null) {
+                videoBuffer.clear();
+            }
         }
 
         /**
@@ -61,12 +103,34 @@ public class VideoDecoder implements Disposable {
         }
 
         /**
-         * @return The videobuffer
+         * @return The videobuffer, which holds all the frames of the frame buffer one after the other
          */
         public ByteBuffer getVideoBuffer() {
             return videoBuffer;
         }
 
+        /**
+         * @param index The index of the frame, as returned by {@link VideoDecoder#nextVideoFrameIndex()}
+         * @return A buffer which covers exactly the given frame of the videobuffer
+         */
+        public ByteBuffer getVideoFrame(int index) {
+            return videoFrames[index];
+        }
+
+        /**
+         * @return The amount of frames the videobuffer can hold
+         */
+        public int getNumVideoFrames() {
+            return videoFrames.length;
+        }
+
+        /**
+         * @return The size in bytes of a single frame
+         */
+        public int getVideoFrameSize() {
+            return videoFrameSize;
+        }
+
         /**
          * @return The amount of audio channels
          */
@@ -82,18 +146,60 @@ public class VideoDecoder implements Disposable {
         }
 
         /**
-         * @return The height of the video
+         * @return The height of the frames, which is less than the height of the video when it is scaled down
          */
         public int getVideoHeight() {
             return videoHeight;
         }
 
         /**
-         * @return The width of the video
+         * @return The width of the frames, which is less than the width of the video when it is scaled down
          */
         public int getVideoWidth() {
             return videoWidth;
         }
+
+        /**
+         * @return The height of the shown part of the video, before it is scaled down
+         * @see VideoDecoder#setOutputSize(int, int, int, int, int, int)
+         */
+        public int getVideoSourceHeight() {
+            return videoSourceHeight;
+        }
+
+        /**
+         * @return The width of the shown part of the video, before it is scaled down
+         * @see VideoDecoder#setOutputSize(int, int, int, int, int, int)
+         */
+        public int getVideoSourceWidth() {
+            return videoSourceWidth;
+        }
+    }
+
+    /**
+     * The memory of a frame buffer, kept from a disposed decoder so the next decoder can use it instead of allocating
+     * its own. The memory is only handed over once the disposed decoder stopped decoding, which happens on a background
+     * thread. Should be disposed when it is not handed to a decoder.
+     */
+    public static final class FrameMemory implements Disposable {
+        private long handle;
+
+        // If constructor parameters are changed, please also update the native code to call the new
+        // constructor!
+        private FrameMemory(long handle) {
+            this.handle = handle;
+        }
+
+        /**
+         * Frees the memory, without waiting for the decoder it was kept from.
+         */
+        @Override
+        public void dispose() {
+            if (handle != 0) {
+                releaseFrameMemory(handle);
+                handle = 0;
+            }
+        }
     }
 
     /**
@@ -107,11 +213,13 @@ public class VideoDecoder implements Disposable {
     }
 
     /**
-     * This will close the VideoDecoder, and with it cleanup everything.
+     * This will close the VideoDecoder, and with it cleanup everything. Returns right away: the decoding threads are
+     * told to stop, and the native decoder is deleted on a background thread once they did.
      */
     public void close() {
         disposeNative();
         nativePointer = 0;
+        buffers = null;
     }
 
     /**
@@ -122,6 +230,32 @@ public class VideoDecoder implements Disposable {
         close();
     }
 
+    /**
+     * Disposes this decoder, but keeps the memory of its frame buffer, so it can be handed to the next decoder with
+     * {@link #reuseFrameMemory(FrameMemory)}. Returns right away like {@link #close()}.
+     *
+     * @return The memory of the frame buffer, or null when nothing was loaded.
+     */
+    public FrameMemory disposeKeepingFrameMemory() {
+        FrameMemory memory = buffers != null ? retainFrameMemory() : null;
+        close();
+        return memory;
+    }
+
+    /**
+     * Makes the next load use the given memory as frame buffer, when it is large enough to hold the frames of the
+     * video. A video with the same dimensions and the same amount of buffered frames then gets its frames at the same
+     * addresses as the previous one. Should be called before loading. Waits until the decoder the memory was kept from
+     * stopped decoding, so it should not be called on the render thread. The decoder owns the memory from now on, the
+     * given object is left empty.
+     */
+    public void reuseFrameMemory(FrameMemory memory) {
+        if (memory.handle != 0) {
+            reuseVideoBuffer(memory.handle);
+            memory.handle = 0;
+        }
+    }
+
     /*
 	 * Native functions
 	 * @formatter:off
@@ -129,52 +263,163 @@ public class VideoDecoder implements Disposable {
 
 	/*JNI
 	 	#include "VideoDecoder.h"
+	 	#include "DecoderReaper.hpp"
 	 	#include "Utilities.h"
 
 	 	#include <stdexcept>
+	 	#include <pthread.h>
 
 	 	JavaVM* jvm = NULL;
 	 	JavaVMAttachArgs args;
 
 	 	struct FfMpegCustomFileReaderData {
-            jobject objectToCall;
-            jmethodID methodToCall;
+            jobject source;
+            jclass decoderClass;
+            jmethodID readMethod;
+            jmethodID seekMethod;
+            jmethodID positionMethod;
+            jmethodID sizeMethod;
+            jmethodID disposeMethod;
+            //A direct buffer over the block FFmpeg reads into, reused as long as FFmpeg uses the same block
+            jobject buffer;
+            u_int8_t* bufferAddress;
+            int bufferCapacity;
         };
 
-        static int ffmpegCustomFileReader(void* data, u_int8_t* buffer, int bufferSize) {
-            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
-            JNIEnv * env;
-		    // double check it's all ok
+        static pthread_key_t threadEnvKey;
+        static pthread_once_t threadEnvKeyOnce = PTHREAD_ONCE_INIT;
+
+        static void detachThread(void* env) {
+            jvm->DetachCurrentThread();
+        }
+
+        static void createThreadEnvKey() {
+            pthread_key_create(&threadEnvKey, detachThread);
+        }
+
+        //Returns an env for the calling thread. Native threads are attached on their first call, and stay attached
+        //until they end, since attaching costs far more than the read itself.
+        static JNIEnv* getThreadEnv() {
+            JNIEnv * env = NULL;
 		    int getEnvStat = jvm->GetEnv((void **)&env, JNI_VERSION_1_6);
 		    if (getEnvStat == JNI_EDETACHED) {
 		        logDebug("Not attached\n");
-		        if (jvm->AttachCurrentThread((void **) &env, NULL) != 0) {
+		        if (jvm->AttachCurrentThreadAsDaemon((void **) &env, &args) != 0) {
 		            logError("Failed to attach\n");
+		            return NULL;
 		        }
-		    } else if (getEnvStat == JNI_OK) {
-		        //
+		        pthread_once(&threadEnvKeyOnce, createThreadEnvKey);
+		        pthread_setspecific(threadEnvKey, env);
 		    } else if (getEnvStat == JNI_EVERSION) {
 		        logError("Unsupported version\n");
+		        return NULL;
 		    }
+		    return env;
+        }
 
-		jint integer = env->CallIntMethod(customData->objectToCall, customData->methodToCall, env->NewDirectByteBuffer(buffer, bufferSize));
+        static int ffmpegCustomFileReader(void* data, u_int8_t* buffer, int bufferSize) {
+            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
+            JNIEnv * env = getThreadEnv();
+            if (env == NULL) {
+                return -1;
+            }
+
+            //The threads stay attached, so nothing may be left behind as a local reference
+            if (customData->buffer == NULL || customData->bufferAddress != buffer || customData->bufferCapacity < bufferSize) {
+                if (customData->buffer != NULL) {
+                    env->DeleteGlobalRef(customData->buffer);
+                }
+                jobject directBuffer = env->NewDirectByteBuffer(buffer, bufferSize);
+                customData->buffer = env->NewGlobalRef(directBuffer);
+                env->DeleteLocalRef(directBuffer);
+                customData->bufferAddress = buffer;
+                customData->bufferCapacity = bufferSize;
+            }
+
+		    jint integer = env->CallStaticIntMethod(customData->decoderClass, customData->readMethod, customData->source, customData->buffer, bufferSize);
 
 		    if (env->ExceptionCheck()) {
 		        env->ExceptionDescribe();
+		        integer = -1;
 		    }
 
-		    jvm->DetachCurrentThread();
             logDebug("Size %d on %p\n", bufferSize, buffer);
             return integer;
         }
 
+        static int64_t ffmpegCustomFileSeeker(void* data, int64_t offset, int whence) {
+            FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
+            JNIEnv * env = getThreadEnv();
+            if (env == NULL) {
+                return -1;
+            }
+
+            jlong position = -1;
+            switch(whence) {
+            case AVSEEK_SIZE:
+                position = env->CallLongMethod(customData->source, customData->sizeMethod);
+                break;
+            case SEEK_SET:
+                position = offset;
+                break;
+            case SEEK_CUR:
+                position = env->CallLongMethod(customData->source, customData->positionMethod) + offset;
+                break;
+            case SEEK_END: {
+                jlong size = env->CallLongMethod(customData->source, customData->sizeMethod);
+                position = size >= 0 ? size + offset : -1;
+                break;
+            }
+            }
+            if (whence != AVSEEK_SIZE && position >= 0 && !env->ExceptionCheck()) {
+                if (!env->CallBooleanMethod(customData->source, customData->seekMethod, position)) {
+                    position = -1;
+                }
+            }
+
+		    if (env->ExceptionCheck()) {
+		        env->ExceptionDescribe();
+		        position = -1;
+		    }
+            logDebug("Seek to %lld (%d), now at %lld\n", (long long)offset, whence, (long long)position);
+            return position;
+        }
+
+        static jobject newVideoDecoderBuffers(JNIEnv* env, const VideoBufferInfo& bufferInfo) {
+            jobject videoBuffer = NULL;
+            jobject audioBuffer = NULL;
+            if(bufferInfo.videoBuffer != NULL && bufferInfo.videoBufferSize > 0) {
+                videoBuffer = env->NewDirectByteBuffer(bufferInfo.videoBuffer, bufferInfo.videoBufferSize);
+            }
+            if(bufferInfo.audioBuffer != NULL && bufferInfo.audioBufferSize > 0) {
+                audioBuffer = env->NewDirectByteBuffer(bufferInfo.audioBuffer, bufferInfo.audioBufferSize);
+            }
+
+            jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$VideoDecoderBuffers");
+            if(cls == NULL) {
+                logError("[newVideoDecoderBuffers] Could not find VideoDecoderBuffers class");
+                return NULL;
+            }
+            jmethodID constructor = env->GetMethodID(cls, "<init>", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;IIIIIII)V");
+            return env->NewObject(cls, constructor, videoBuffer, audioBuffer, bufferInfo.videoFrameSize, bufferInfo.videoWidth, bufferInfo.videoHeight, bufferInfo.videoSourceWidth, bufferInfo.videoSourceHeight, bufferInfo.audioChannels, bufferInfo.audioSampleRate);
+        }
+
         static void customReaderDataCleanup(void* data) {
             FfMpegCustomFileReaderData* customData = (FfMpegCustomFileReaderData*)data;
-//            customData->env->DeleteGlobalRef(customData->objectToCall);
-//            jvm->DetachCurrentThread();
-//            customData->env = NULL;
-//            customData->objectToCall = NULL;
-//            customData->methodToCall = NULL;
+            JNIEnv * env = getThreadEnv();
+            if (env != NULL) {
+                //Called once the decoder no longer reads, so the source can be closed
+                env->CallVoidMethod(customData->source, customData->disposeMethod);
+                if (env->ExceptionCheck()) {
+                    env->ExceptionDescribe();
+                }
+                env->DeleteGlobalRef(customData->source);
+                env->DeleteGlobalRef(customData->decoderClass);
+                if (customData->buffer != NULL) {
+                    env->DeleteGlobalRef(customData->buffer);
+                }
+            }
+            delete customData;
         }
 
 	*/
@@ -197,18 +442,88 @@ public class VideoDecoder implements Disposable {
 		return (jlong)pointer;
 	*/
 
+    /**
+     * This will load a video for playback, using the default {@link VideoDecoderConfig}.
+     *
+     * @see #loadStream(VideoSource, int, VideoDecoderConfig)
+     */
+    public VideoDecoderBuffers loadStream(VideoSource source, int pixelFormat)
+            throws IllegalArgumentException,
+            Exception {
+        return loadStream(source, pixelFormat, new VideoDecoderConfig());
+    }
+
+    /**
+     * This will load a video for playback. The returned buffers are also kept by this decoder, so frames can be
+     * retrieved by {@link #nextVideoFrame()}.
+     *
+     * @param source The data of the video. It is read from the decoding threads until this decoder is disposed. The
+     *        decoder owns it from now on, and disposes it in the background once it no longer reads from it.
+     * @param config The amount of buffered frames, the buffer sizes and the amount of threads the decoder uses.
+     * @see #loadStreamNative(VideoSource, boolean, int, int, int, int, int, int)
+     */
+    public VideoDecoderBuffers loadStream(VideoSource source, int pixelFormat, VideoDecoderConfig config)
+            throws IllegalArgumentException,
+            Exception {
+        buffers = loadStreamNative(source, source.isSeekable(), pixelFormat, config.numBufferedFrames,
+                config.audioBufferSize, config.ioBufferSize, config.numQueuedPackets, getNumDecodeThreads(config));
+        return buffers;
+    }
+
+    /**
+     * This will load a video file from the file system for playback. The file is opened and read by FFmpeg itself, so
+     * reading it never calls into Java. The returned buffers are also kept by this decoder, so frames can be retrieved
+     * by {@link #nextVideoFrame()}.
+     *
+     * @param path The absolute path of the file.
+     * @param config The amount of buffered frames, the buffer sizes and the amount of threads the decoder uses.
+     * @see #loadStream(VideoSource, int, VideoDecoderConfig)
+     */
+    public VideoDecoderBuffers loadFile(String path, int pixelFormat, VideoDecoderConfig config)
+            throws IllegalArgumentException,
+            Exception {
+        buffers = loadFileNative(path, pixelFormat, config.numBufferedFrames, config.audioBufferSize,
+                config.ioBufferSize, config.numQueuedPackets, getNumDecodeThreads(config));
+        return buffers;
+    }
+
+    /**
+     * Called by jni to read the next block of the video. The buffer is reused for every block FFmpeg reads into the
+     * same memory, so only its bounds are reset here.
+     */
+    @SuppressWarnings("unused")
+    private static int readSource(VideoSource source, ByteBuffer buffer, int size) throws IOException {
+        buffer.clear();
+        buffer.limit(size);
+        return source.read(buffer);
+    }
+
+    private static int getNumDecodeThreads(VideoDecoderConfig config) {
+        if (config.numDecodeThreads > 0) {
+            return config.numDecodeThreads;
+        }
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, 4));
+    }
+
     /**
      * This will load a file for playback
      *
-     * @param decodingObject The instance on which the next parameter should be used.
-     * @param methodName The name of the function that should be called on the provided object. (The function
-     *        should have return type int, and should accept a single ByteBuffer).
+     * @param source The data of the video.
+     * @param seekable Whether the decoder may seek in the source.
+     * @param pixelFormat The format the decoded frames should be converted to. Either {@link #PIXEL_FORMAT_RGB24}
+     *        or {@link #PIXEL_FORMAT_YUV420P}.
+     * @param numBufferedFrames See {@link VideoDecoderConfig#numBufferedFrames}.
+     * @param audioBufferSize See {@link VideoDecoderConfig#audioBufferSize}.
+     * @param ioBufferSize See {@link VideoDecoderConfig#ioBufferSize}.
+     * @param numQueuedPackets See {@link VideoDecoderConfig#numQueuedPackets}.
+     * @param numDecodeThreads See {@link VideoDecoderConfig#numDecodeThreads}, should be at least 1.
      * @return A VideoDecoderBuffers object which contains all the information that may be needed about the
      *         video.
      * @throws IllegalArgumentException When the filename is invalid.
      * @throws Exception Runtime exceptions in c++, which can have different causes.
      */
-    public native VideoDecoderBuffers loadStream(Object decodingObject, String methodName)
+    private native VideoDecoderBuffers loadStreamNative(VideoSource source, boolean seekable, int pixelFormat,
+            int numBufferedFrames, int audioBufferSize, int ioBufferSize, int numQueuedPackets, int numDecodeThreads)
             throws IllegalArgumentException,
             Exception;/*
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
@@ -217,32 +532,72 @@ public class VideoDecoder implements Disposable {
             memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
             FfMpegCustomFileReaderData* data = new FfMpegCustomFileReaderData();
             memset(data, 0, sizeof(FfMpegCustomFileReaderData));
-            data->objectToCall = env->NewGlobalRef(decodingObject);
-            jclass clazz = env->GetObjectClass(data->objectToCall);
-            data->methodToCall = env->GetMethodID(clazz, methodName, "(Ljava/nio/ByteBuffer;)I");
-            if(data->methodToCall == NULL) {
+            jclass clazz = env->FindClass("com/badlogic/gdx/video/VideoSource");
+            if(source == NULL || clazz == NULL) {
                 delete data;
-                throw std::invalid_argument("Supplied method name invalid! Is it having the correct signature?");
+                throw std::invalid_argument("A VideoSource should be supplied!");
             }
+            data->source = env->NewGlobalRef(source);
+            jclass decoderClass = env->GetObjectClass(object);
+            data->decoderClass = (jclass)env->NewGlobalRef(decoderClass);
+            data->readMethod = env->GetStaticMethodID(decoderClass, "readSource", "(Lcom/badlogic/gdx/video/VideoSource;Ljava/nio/ByteBuffer;I)I");
+            data->seekMethod = env->GetMethodID(clazz, "seek", "(J)Z");
+            data->positionMethod = env->GetMethodID(clazz, "position", "()J");
+            data->sizeMethod = env->GetMethodID(clazz, "size", "()J");
+            data->disposeMethod = env->GetMethodID(env->FindClass("com/badlogic/gdx/utils/Disposable"), "dispose", "()V");
+
+            VideoDecoderConfig config;
+            config.numBufferedFrames = numBufferedFrames;
+            config.audioBufferSize = audioBufferSize;
+            config.ioBufferSize = ioBufferSize;
+            config.numQueuedPackets = numQueuedPackets;
+            config.numDecodeThreads = numDecodeThreads;
+
+            pointer->loadFile(ffmpegCustomFileReader, seekable ? ffmpegCustomFileSeeker : NULL, data, customReaderDataCleanup, pixelFormat, &config, &bufferInfo);
+            return newVideoDecoderBuffers(env, bufferInfo);
+		} catch(std::runtime_error e) {
+			logDebug("Caught exception \n");
+			jclass clazz = env->FindClass("java/lang/Exception");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return 0;
+			}
+			env->ThrowNew(clazz, e.what());
+		} catch(std::invalid_argument e) {
+			jclass clazz = env->FindClass("java/lang/IllegalArgumentException");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return 0;
+			}
+			env->ThrowNew(clazz, e.what());
+		}
+		return 0;
+	*/
 
-            pointer->loadFile(ffmpegCustomFileReader, data, customReaderDataCleanup, &bufferInfo);
-            jobject videoBuffer = NULL;
-            jobject audioBuffer = NULL;
-            jobject customIOBuffer = NULL;
-            if(bufferInfo.videoBuffer != NULL && bufferInfo.videoBufferSize > 0) {
-                videoBuffer = env->NewDirectByteBuffer(bufferInfo.videoBuffer, bufferInfo.videoBufferSize);
-            }
-            if(bufferInfo.audioBuffer != NULL && bufferInfo.audioBufferSize > 0) {
-                audioBuffer = env->NewDirectByteBuffer(bufferInfo.audioBuffer, bufferInfo.audioBufferSize);
-            }
+    /**
+     * This will load a file from the file system for playback.
+     *
+     * @param path The absolute path of the file.
+     * @see #loadStreamNative(VideoSource, boolean, int, int, int, int, int, int)
+     * @throws IllegalArgumentException When the filename is invalid.
+     * @throws Exception Runtime exceptions in c++, which can have different causes.
+     */
+    private native VideoDecoderBuffers loadFileNative(String path, int pixelFormat, int numBufferedFrames,
+            int audioBufferSize, int ioBufferSize, int numQueuedPackets, int numDecodeThreads)
+            throws IllegalArgumentException,
+            Exception;/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		try {
+			VideoBufferInfo bufferInfo;
+            memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
 
-            jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$VideoDecoderBuffers");
-            if(cls == NULL) {
-                logError("[wrapped_Java_com_badlogic_gdx_videoVideoDecoder_loadFile] Could not find VideoDecoderBuffers class");
-                return NULL;
-            }
-            jmethodID constructor = env->GetMethodID(cls, "<init>", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;IIII)V");
-            return env->NewObject(cls, constructor, videoBuffer, audioBuffer, bufferInfo.videoWidth, bufferInfo.videoHeight, bufferInfo.audioChannels, bufferInfo.audioSampleRate);
+            VideoDecoderConfig config;
+            config.numBufferedFrames = numBufferedFrames;
+            config.audioBufferSize = audioBufferSize;
+            config.ioBufferSize = ioBufferSize;
+            config.numQueuedPackets = numQueuedPackets;
+            config.numDecodeThreads = numDecodeThreads;
+
+            pointer->loadFile(path, pixelFormat, &config, &bufferInfo);
+            return newVideoDecoderBuffers(env, bufferInfo);
 		} catch(std::runtime_error e) {
 			logDebug("Caught exception \n");
 			jclass clazz = env->FindClass("java/lang/Exception");
@@ -262,30 +617,113 @@ public class VideoDecoder implements Disposable {
 
     /**
      * This will return a ByteBuffer pointing to the next videoframe. This bytebuffer contains a single frame
-     * in RGB888.
+     * in the pixel format that was requested in {@link #loadStream(VideoSource, int, VideoDecoderConfig)}. The returned buffer
+     * is shared with the frame buffer, so no data is copied.
      *
-     * @return A ByteBuffer pointing to the next frame.
+     * @return A ByteBuffer pointing to the next frame, or null when no new frame is decoded yet, or the end of the
+     *         video is reached.
      */
-    public native ByteBuffer nextVideoFrame();/*
+    public ByteBuffer nextVideoFrame() {
+        int index = nextVideoFrameIndex();
+        return index < 0 ? null : buffers.getVideoFrame(index);
+    }
+
+    /**
+     * This will move on to the next videoframe. The frame can be accessed through
+     * {@link VideoDecoderBuffers#getVideoFrame(int)} of {@link #getBuffers()}, and its contents stay valid until
+     * this method is called again. Never waits for the decoding thread.
+     *
+     * @return The index of the next frame in the frame buffer, -1 when the end of the video is reached, or
+     *         {@link #FRAME_UNCHANGED} when the next frame is not decoded yet.
+     */
+    public int nextVideoFrameIndex() {
+        int index = nextVideoFrameIndexNative();
+        if (index == FRAME_OUTPUT_CHANGED) {
+            // The first frame at the size set by setOutputSize.
+            buffers = takeVideoOutput();
+            index = nextVideoFrameIndexNative();
+        }
+        return index;
+    }
+
+    private native int nextVideoFrameIndexNative();/*
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
-		u_int8_t* buffer = pointer->nextVideoFrame();
+		return pointer->nextVideoFrameIndex();
+	*/
+
+    private native VideoDecoderBuffers takeVideoOutput();/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		VideoBufferInfo bufferInfo;
+		memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
+		pointer->takeVideoOutput(&bufferInfo);
+		return newVideoDecoderBuffers(env, bufferInfo);
+	*/
+
+    /**
+     * @return The buffers that hold the frame returned last by {@link #nextVideoFrameIndex()}. They are replaced when
+     *         the first frame at a size set by {@link #setOutputSize(int, int, int, int, int, int)} is returned.
+     */
+    public VideoDecoderBuffers getBuffers() {
+        return buffers;
+    }
 
-		return (buffer == NULL) ? NULL : env->NewDirectByteBuffer(buffer, pointer->getVideoFrameSize());
+    /**
+     * This throws away the buffered frames that are already late, so the next call to {@link #nextVideoFrameIndex()}
+     * returns the frame that should be shown at the given time. A frame is late when the frame after it should
+     * already be shown. The last buffered frame is never thrown away.
+     * <p/>
+     * The decoding thread compares its progress to the time given here. When it falls behind, it skips the loop
+     * filter, then non reference frames, and finally decodes only keyframes, until it caught up again.
+     *
+     * @param playbackTime The current playback time in seconds.
+     * @return The amount of frames that were thrown away.
+     */
+    public native int dropLateVideoFrames(double playbackTime);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->dropLateVideoFrames(playbackTime);
 	*/
 
     /**
      * This will fill the ByteBuffer for the audio (The one gotten from VideoDecoderBuffers object retrieved
-     * from loadFile) with new audio.
+     * from loadFile) with new audio. The audio is decoded ahead of time on a native thread, so this only copies
+     * already decoded samples and never waits for the decoder. When decoding could not keep up, the remainder of
+     * the buffer is filled with silence.
      */
     public native void updateAudioBuffer();/*
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		pointer->updateAudioBuffer();
 	*/
 
+    /**
+     * This copies the next decoded audio straight into the given array, as 16 bit stereo. Unlike
+     * {@link #updateAudioBuffer()}, which hands over the audio in chunks of {@link VideoDecoderConfig#audioBufferSize},
+     * any amount is copied in a single call, so an audio device can be filled with one call per buffer. Never waits
+     * for the decoder, when decoding could not keep up, the remainder is filled with silence.
+     *
+     * @param buffer The array to copy the audio into.
+     * @param offset The index in the array of the first byte to copy to.
+     * @param length The amount of bytes to copy, rounded down to whole samples of 4 bytes.
+     * @return The amount of bytes at the end that were filled with silence. The silence is no part of the video, so a
+     *         clock that follows the played audio should leave it out.
+     */
+    public int readAudio(byte[] buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: "
+                    + buffer.length);
+        }
+        return readAudioNative(nativePointer, buffer, offset, length & ~3);
+    }
+
+    // The array is pinned while the audio is copied, so no other JNI function may be called, not even to look up the
+    // native object.
+    private static native int readAudioNative(long nativePointer, byte[] buffer, int offset, int length);/*
+		return ((VideoDecoder*)nativePointer)->readAudio(buffer + offset, length);
+	*/
+
     /**
      * This gets the timestamp of the current displaying frame (The one that you got last by calling
      * nextVideoFrame). The timestamp is in seconds, and can be total nonsense if you never called
-     * nextVideoFrame. It is being corrected when the audio couldn't keep up.
+     * nextVideoFrame.
      *
      * @return The timestamp in seconds.
      */
@@ -294,16 +732,165 @@ public class VideoDecoder implements Disposable {
 		return pointer->getCurrentFrameTimestamp();
 	*/
 
+    /**
+     * This moves playback to the given position. The decoder continues from the keyframe before the position, and
+     * throws away everything before the position, so the next frame and the next audio are the ones at the
+     * position. Only waits for a decoding step that is running, which decodes at most one frame. The buffers are
+     * filled again by the decoding threads, and {@link #isReadyToPlay()} tells when the first frame at the position
+     * is there. Seeking is also possible after the end of the video was reached.
+     *
+     * @param positionMillis The position in milliseconds, clamped to the start of the video.
+     * @throws Exception When the stream could not be seeked in.
+     */
+    public native void seek(long positionMillis) throws Exception;/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		try {
+			pointer->seek(positionMillis);
+		} catch(std::runtime_error e) {
+			jclass clazz = env->FindClass("java/lang/Exception");
+			if(clazz == 0) { //Something went horribly wrong here...
+				return;
+			}
+			env->ThrowNew(clazz, e.what());
+		}
+	*/
+
+    /**
+     * Sets the size the frames are scaled down to, and the part of the video they show, so a video that is drawn
+     * small is converted and uploaded at the size it is drawn at. Frames keep the aspect ratio of the shown part, and
+     * are never scaled up. Before loading, this sets the size the stream is loaded with.
+     * <p/>
+     * During playback, this returns right away. The decoding thread continues at the new size in a new frame buffer,
+     * while the frames that were already decoded at the old size are still returned. Once they are all shown,
+     * {@link #nextVideoFrameIndex()} moves on to the new buffers, which {@link #getBuffers()} then returns.
+     *
+     * @param width The maximum width of the frames, or 0 for the width of the shown part.
+     * @param height The maximum height of the frames, or 0 for the height of the shown part.
+     * @param cropX The left edge of the shown part, in pixels of the video.
+     * @param cropY The top edge of the shown part, in pixels of the video.
+     * @param cropWidth The width of the shown part, or 0 to show the whole video.
+     * @param cropHeight The height of the shown part, or 0 to show the whole video.
+     */
+    public native void setOutputSize(int width, int height, int cropX, int cropY, int cropWidth, int cropHeight);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setOutputSize(width, height, cropX, cropY, cropWidth, cropHeight);
+	*/
+
+    /**
+     * Sets whether the audio is decoded. When disabled before loading, the audio stream isn't even opened, and the
+     * buffers have no audio buffer. Videos that are never heard then only cost decoding the video. The packets of all
+     * streams that are not decoded are discarded by the demuxer.
+     * <p/>
+     * Can be changed during playback. When enabled, the audio continues from where the demuxer is, which is ahead of
+     * playback, so playback should seek to its position to get the audio back in sync.
+     *
+     * @return The buffers, which include the audio buffer once the audio is opened, or null when nothing is loaded
+     *         yet.
+     */
+    public VideoDecoderBuffers setAudioEnabled(boolean enabled) {
+        VideoDecoderBuffers newBuffers = setAudioEnabledNative(enabled);
+        if (newBuffers != null) {
+            buffers = newBuffers;
+        }
+        return newBuffers;
+    }
+
+    private native VideoDecoderBuffers setAudioEnabledNative(boolean enabled);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		VideoBufferInfo bufferInfo;
+		memset(&bufferInfo, 0, sizeof(VideoBufferInfo));
+		if(!pointer->setAudioEnabled(enabled, &bufferInfo)) {
+			return NULL;
+		}
+		return newVideoDecoderBuffers(env, bufferInfo);
+	*/
+
+    /**
+     * @return The duration of the video in milliseconds, or -1 when it is unknown.
+     */
+    public native long getDuration();/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->getDuration();
+	*/
+
+    /**
+     * Sets whether the video starts over when its end is reached. The file is then rewound without recreating
+     * anything, and the start of the next loop is decoded while the current one is still playing, so the loop is
+     * gapless. The frame timestamps keep increasing over loops, so playback can keep its clock running. Can be called
+     * before loading a stream, and at any time during playback.
+     */
+    public native void setLooping(boolean looping);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setLooping(looping);
+	*/
+
+    /**
+     * Sets the priority of this decoder. The video of all decoders in the process is decoded by a shared pool of
+     * workers, see {@link #setMaxDecodeWorkers(int)}. When there is more to decode than there are workers, decoders
+     * with a higher priority are served first. Among decoders with the same priority, the one that is closest to
+     * running out of frames is served first. Can be called at any time, the default is 0.
+     */
+    public native void setDecodePriority(int priority);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		pointer->setDecodePriority(priority);
+	*/
+
+    /**
+     * Sets the amount of workers that decode the video of all decoders in the process, so decoding never takes more
+     * than that many cores, no matter how many videos are playing. Each worker decodes one frame at a time, with as
+     * many threads as {@link VideoDecoderConfig#numDecodeThreads} allows for that video. The audio of each decoder is
+     * decoded by a thread of its own, which takes little time. Can be changed at any time, the default is 2.
+     */
+    public static native void setMaxDecodeWorkers(int maxWorkers);/*
+		DecodeScheduler::getInstance()->setMaxWorkers(maxWorkers);
+	*/
+
+    /**
+     * @return The amount of workers that decode video
+     * @see #setMaxDecodeWorkers(int)
+     */
+    public static native int getMaxDecodeWorkers();/*
+		return DecodeScheduler::getInstance()->getMaxWorkers();
+	*/
+
+    private native void reuseVideoBuffer(long handle);/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		int size = 0;
+		u_int8_t* buffer = ((RetainedVideoBuffer*)handle)->take(&size);
+		if(buffer != NULL) {
+		    pointer->reuseVideoBuffer(buffer, size);
+		}
+	*/
+
+    private native FrameMemory retainFrameMemory();/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		RetainedVideoBuffer* handle = pointer->retainVideoBuffer();
+		if(handle == NULL) {
+		    return NULL;
+		}
+		jclass cls = env->FindClass("com/badlogic/gdx/video/VideoDecoder$FrameMemory");
+		if(cls == NULL) {
+		    logError("[retainFrameMemory] Could not find FrameMemory class");
+		    handle->release();
+		    return NULL;
+		}
+		jmethodID constructor = env->GetMethodID(cls, "<init>", "(J)V");
+		return env->NewObject(cls, constructor, (jlong)handle);
+	*/
+
+    private static native void releaseFrameMemory(long handle);/*
+		((RetainedVideoBuffer*)handle)->release();
+	*/
+
     /**
      * Disposes the native object.
      */
     private native void disposeNative();/*
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
-		FfMpegCustomFileReaderData* data = (FfMpegCustomFileReaderData*)pointer->getCustomFileBufferFuncData();
-        if(data != NULL) {
-            delete data;
-        }
-		delete pointer;
+		//Joining the decoding threads and closing the codecs can take a while, so it is done by the reaper. The
+		//decoder may still read from the stream until it is deleted, the stream is released by its cleanup function.
+		pointer->stop();
+		DecoderReaper::getInstance()->add(pointer);
 	*/
 
     /**
@@ -313,4 +900,13 @@ public class VideoDecoder implements Disposable {
 		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
 		return pointer->isBuffered();
 	 */
+
+    /**
+     * @return Whether the first frame after a seek is decoded, or the video has ended, and the audio is buffered when
+     *         the video has audio.
+     */
+    public native boolean isReadyToPlay();/*
+		VideoDecoder* pointer = getClassPointer<VideoDecoder>(env, object);
+		return pointer->isReadyToPlay();
+	 */
 }
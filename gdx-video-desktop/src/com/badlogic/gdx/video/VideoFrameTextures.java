@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.video.VideoDecoder.VideoDecoderBuffers;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Owns the textures the decoded frames are uploaded to, one texture per plane of the frame.
+ * <p/>
+ * By default the frames are uploaded synchronously, straight from the decoder's frame buffer. When pixel buffer
+ * objects are used, a frame is copied into a mapped PBO and the texture update is sourced from that PBO, so the
+ * transfer happens asynchronously. In that mode the frames are rotated through as many texture sets as there are
+ * PBOs, so a texture the GPU may still be sampling from is never written to. A frame is only sampled from the next
+ * render frame on, while its transfer may still be in flight it is the frame uploaded before that one which is drawn.
+ * This costs a frame of latency, but drawing never waits for an upload.
+ * <p/>
+ * The textures can be kept for the next video, when it has the same dimensions and pixel format.
+ */
+final class VideoFrameTextures implements Disposable {
+
+    private final int width, height, pixelFormat, requestedPixelBuffers;
+    private final int numPlanes;
+    private final int[] planeWidths, planeHeights, planeOffsets;
+    private final int planeGlFormat;
+    private int frameSize;
+
+    /** The texture sets, indexed by set and then by plane. */
+    private final Texture[][] textures;
+    /** The set the last frame was uploaded to. */
+    private int currentSet = 0;
+    /** The set of the frame uploaded before, drawn during the render frame of the upload, or -1 if there is none. */
+    private int previousSet = -1;
+    /** The render frame during which the last frame was uploaded through a PBO. */
+    private long uploadFrameId = -1;
+
+    /** The planes of every frame in the decoder's frame buffer, indexed by frame and then by plane. */
+    private ByteBuffer[][] framePlanes;
+    private ByteBuffer[] frames;
+
+    private final int[] pixelBuffers;
+    private ByteBuffer mappedPixelBuffer;
+
+    /**
+     * @param numPixelBuffers The amount of PBOs to stream the frames through, 2 or 3 for double or triple
+     *        buffering. When 0, or when pixel buffer objects are not supported, frames are uploaded directly.
+     */
+    VideoFrameTextures(VideoDecoderBuffers buffers, int pixelFormat, int numPixelBuffers) {
+        width = buffers.getVideoWidth();
+        height = buffers.getVideoHeight();
+        this.pixelFormat = pixelFormat;
+        requestedPixelBuffers = numPixelBuffers;
+        if (pixelFormat == VideoDecoder.PIXEL_FORMAT_YUV420P) {
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            planeWidths = new int[] { width, chromaWidth, chromaWidth };
+            planeHeights = new int[] { height, chromaHeight, chromaHeight };
+            planeGlFormat = GL20.GL_ALPHA;
+        } else {
+            planeWidths = new int[] { width };
+            planeHeights = new int[] { height };
+            planeGlFormat = GL20.GL_RGB;
+        }
+        numPlanes = planeWidths.length;
+
+        // The planes are stored one after the other in a frame.
+        planeOffsets = new int[numPlanes];
+        for (int plane = 1; plane < numPlanes; plane++) {
+            planeOffsets[plane] = planeOffsets[plane - 1] + getPlaneSize(plane - 1);
+        }
+
+        setBuffers(buffers);
+
+        if (numPixelBuffers > 0 && !isPixelBufferSupported()) {
+            Gdx.app.log(VideoFrameTextures.class.getSimpleName(),
+                    "Pixel buffer objects are not supported, falling back to direct texture uploads.");
+            numPixelBuffers = 0;
+        }
+        pixelBuffers = new int[numPixelBuffers];
+        for (int i = 0; i < numPixelBuffers; i++) {
+            pixelBuffers[i] = GL15.glGenBuffers();
+        }
+
+        // Storage is allocated once here, frames only ever update it.
+        textures = new Texture[Math.max(1, numPixelBuffers)][numPlanes];
+        for (int set = 0; set < textures.length; set++) {
+            for (int plane = 0; plane < numPlanes; plane++) {
+                Texture texture = new Texture(new GLOnlyTextureData(planeWidths[plane], planeHeights[plane], 0,
+                        planeGlFormat, planeGlFormat, GL20.GL_UNSIGNED_BYTE));
+                texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+                textures[set][plane] = texture;
+            }
+        }
+    }
+
+    private int getPlaneSize(int plane) {
+        int bytesPerPixel = planeGlFormat == GL20.GL_RGB ? 3 : 1;
+        return planeWidths[plane] * planeHeights[plane] * bytesPerPixel;
+    }
+
+    /**
+     * @return Whether these textures can show the frames of the given buffers, so they can be kept for the next
+     *         video instead of being recreated.
+     */
+    boolean isCompatible(VideoDecoderBuffers buffers, int pixelFormat, int numPixelBuffers) {
+        return buffers.getVideoWidth() == width && buffers.getVideoHeight() == height
+                && pixelFormat == this.pixelFormat && numPixelBuffers == requestedPixelBuffers;
+    }
+
+    /**
+     * Makes the frames be uploaded from the given buffers from now on, which should be compatible.
+     *
+     * @see #isCompatible(VideoDecoderBuffers, int, int)
+     */
+    void setBuffers(VideoDecoderBuffers buffers) {
+        frameSize = buffers.getVideoFrameSize();
+        if (frames == null || frames.length != buffers.getNumVideoFrames()) {
+            frames = new ByteBuffer[buffers.getNumVideoFrames()];
+            framePlanes = new ByteBuffer[frames.length][numPlanes];
+        }
+        for (int frame = 0; frame < frames.length; frame++) {
+            ByteBuffer frameData = buffers.getVideoFrame(frame);
+            frames[frame] = frameData;
+            for (int plane = 0; plane < numPlanes; plane++) {
+                frameData.limit(planeOffsets[plane] + getPlaneSize(plane));
+                frameData.position(planeOffsets[plane]);
+                framePlanes[frame][plane] = frameData.slice();
+            }
+            frameData.clear();
+        }
+        // The textures still hold a frame of the last video.
+        previousSet = -1;
+        uploadFrameId = -1;
+    }
+
+    private static boolean isPixelBufferSupported() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        return capabilities.OpenGL21 || capabilities.GL_ARB_pixel_buffer_object;
+    }
+
+    int getNumPlanes() {
+        return numPlanes;
+    }
+
+    /**
+     * Uploads a frame of the decoder's frame buffer.
+     *
+     * @param frameIndex The index of the frame, as returned by {@link VideoDecoder#nextVideoFrameIndex()}
+     */
+    void upload(int frameIndex) {
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        if (pixelBuffers.length == 0) {
+            uploadDirect(framePlanes[frameIndex]);
+        } else {
+            long frameId = Gdx.graphics.getFrameId();
+            if (uploadFrameId != -1 && uploadFrameId != frameId) {
+                // The last upload is done by now, it is drawn until this one is.
+                previousSet = currentSet;
+            }
+            uploadFrameId = frameId;
+            currentSet = (currentSet + 1) % textures.length;
+            uploadThroughPixelBuffer(frames[frameIndex], pixelBuffers[currentSet]);
+        }
+    }
+
+    /**
+     * @return Whether the last uploaded frame is not drawn yet, because its transfer may still be in flight. It is
+     *         drawn from the next render frame on.
+     */
+    boolean isUploadInFlight() {
+        return previousSet != -1 && uploadFrameId == Gdx.graphics.getFrameId();
+    }
+
+    private int getDrawnSet() {
+        return isUploadInFlight() ? previousSet : currentSet;
+    }
+
+    private void uploadDirect(ByteBuffer[] planes) {
+        Texture[] set = textures[currentSet];
+        for (int plane = 0; plane < numPlanes; plane++) {
+            set[plane].bind();
+            Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, 0, planeWidths[plane], planeHeights[plane], planeGlFormat,
+                    GL20.GL_UNSIGNED_BYTE, planes[plane]);
+        }
+    }
+
+    private void uploadThroughPixelBuffer(ByteBuffer frame, int pixelBuffer) {
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pixelBuffer);
+        // Orphan the previous storage, so mapping never waits for a transfer that is still in flight.
+        GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, frameSize, GL15.GL_STREAM_DRAW);
+        mappedPixelBuffer = GL15.glMapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, GL15.GL_WRITE_ONLY, frameSize, mappedPixelBuffer);
+        if (mappedPixelBuffer != null) {
+            mappedPixelBuffer.clear();
+            mappedPixelBuffer.put(frame);
+            frame.clear();
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+
+            // With a PBO bound, the texture update is sourced from the PBO and returns without waiting.
+            Texture[] set = textures[currentSet];
+            for (int plane = 0; plane < numPlanes; plane++) {
+                set[plane].bind();
+                GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, planeWidths[plane], planeHeights[plane], planeGlFormat,
+                        GL11.GL_UNSIGNED_BYTE, planeOffsets[plane]);
+            }
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+    }
+
+    /**
+     * @return The texture the given plane of the drawn frame is in
+     * @see #isUploadInFlight()
+     */
+    Texture getTexture(int plane) {
+        return textures[getDrawnSet()][plane];
+    }
+
+    /**
+     * Binds the planes of the drawn frame to the texture units 0 to {@link #getNumPlanes()} - 1. Texture unit 0 is the
+     * active one afterwards.
+     *
+     * @see #isUploadInFlight()
+     */
+    void bind() {
+        Texture[] set = textures[getDrawnSet()];
+        for (int plane = numPlanes - 1; plane >= 0; plane--) {
+            set[plane].bind(plane);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (Texture[] set : textures) {
+            for (Texture texture : set) {
+                texture.dispose();
+            }
+        }
+        for (int pixelBuffer : pixelBuffers) {
+            GL15.glDeleteBuffers(pixelBuffer);
+        }
+        mappedPixelBuffer = null;
+    }
+}
@@ -16,20 +16,19 @@
 
 package com.badlogic.gdx.video;
 
+import com.badlogic.gdx.Files;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.*;
-import com.badlogic.gdx.graphics.Pixmap.Format;
-import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.video.VideoDecoder.VideoDecoderBuffers;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 
 /**
  * Desktop implementation of the VideoPlayer. It's based on locally compiled FFMPEG native lib.
@@ -40,6 +39,17 @@ import java.nio.channels.ReadableByteChannel;
  */
 public class VideoPlayerDesktop implements VideoPlayer {
     private static final String TAG = VideoPlayerDesktop.class.getSimpleName();
+    /**
+     * When a video was hidden for less than this, it continues where it stopped instead of seeking to where it
+     * should be by now, since a seek throws away the buffered frames, and the last frame stays until the decoder
+     * decoded the new position.
+     */
+    private static final long CATCH_UP_THRESHOLD_MILLIS = 500;
+    /**
+     * How long the drawn size has to call for a different frame size, before the frame buffer is rebuilt. This keeps
+     * an animated resize from rebuilding it over and over.
+     */
+    private static final long RESIZE_DELAY_MILLIS = 500;
 
 	private static final String vertexShader =
             "attribute vec4 "+ ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
@@ -61,27 +71,82 @@ public class VideoPlayerDesktop implements VideoPlayer {
             "void main() {\n" +
             "  gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n" +
             "}";
+    // Converts the three single channel planes to RGB on the GPU (BT.601, limited range).
+    private static final String fragmentShaderYuv =
+            "varying vec4 v_color;\n" +
+            "varying vec2 v_texCoords;\n" +
+            "uniform sampler2D u_textureY;\n" +
+            "uniform sampler2D u_textureU;\n" +
+            "uniform sampler2D u_textureV;\n" +
+            "void main() {\n" +
+            "  float y = 1.1643 * (texture2D(u_textureY, v_texCoords).a - 0.0625);\n" +
+            "  float u = texture2D(u_textureU, v_texCoords).a - 0.5;\n" +
+            "  float v = texture2D(u_textureV, v_texCoords).a - 0.5;\n" +
+            "  vec3 rgb = vec3(y + 1.5958 * v, y - 0.39173 * u - 0.81290 * v, y + 2.017 * u);\n" +
+            "  gl_FragColor = v_color * vec4(rgb, 1.0);\n" +
+            "}";
+
+    private static final String[] textureUniformsRgb = { "u_texture" };
+    private static final String[] textureUniformsYuv = { "u_textureY", "u_textureU", "u_textureV" };
 
+    /** The built-in shader, compiled once and shared by all players that use it. */
+    private static ShaderProgram sharedYuvShader;
+    private static int sharedYuvShaderUsers = 0;
+
+    private final VideoDecoderConfig config;
     private final VideoPlayerMesh mesh;
     private final ShaderProgram shader;
+    private final boolean sharedShader;
+    private final int pixelFormat;
+    private final String[] textureUniforms;
     private final Matrix4 projectionMatrix = new Matrix4();
 
-    private ReadableByteChannel fileChannel;
     private VideoDecoder decoder;
-    private Pixmap pixmap;
-    private Texture texture;
-    private PixmapTextureData textureData;
+    private VideoDecoderBuffers buffers;
+    /** The preparation that is running in the background, if any. */
+    private Preparation preparation;
+    private VideoFrameTextures frameTextures;
+    /** Kept from the previous video, used again when the next video has the same dimensions. */
+    private VideoFrameTextures keptFrameTextures;
+    private VideoDecoder.FrameMemory keptFrameMemory;
+    private int numPixelBuffers = 0;
+    /** The frame as drawn through a batch, see {@link #getTextureRegion()}. */
+    private TextureRegion textureRegion;
+    private boolean textureRegionReady = false;
+    private boolean frameChanged = false;
+    /** Holds the frame converted to RGB, when the frame textures can't be drawn by a batch. */
+    private FrameBuffer frameBuffer;
+    private VideoPlayerMesh conversionMesh;
+    private final Matrix4 conversionProjection = new Matrix4();
     private RawMusic audio;
 
     private FileHandle currentFile;
     private int currentVideoWidth, currentVideoHeight;
     private boolean showAlreadyDecodedFrame = false;
+    /** Whether the decoder is still filling its buffers after a seek, while the last frame stays shown. */
+    private boolean seekPending = false;
     private boolean playing = false;
     private boolean paused = false;
     private float volume = 1.0f;
     private long startTime = 0;
     private long timeBeforePause = 0;
+    /** The position playback starts at, when startTime is set with the next render. */
+    private long startPosition = 0;
+    private boolean completed = false;
     private boolean repeat = false;
+    private boolean disposed = false;
+    private int decodePriority = 0;
+    private boolean scaleToDrawnSize = true;
+    private int outputWidth = 0, outputHeight = 0;
+    private int cropX = 0, cropY = 0, cropWidth = 0, cropHeight = 0;
+    private long resizeRequestTime = 0;
+    private boolean frameTexturesStale = false;
+    private boolean audioEnabled = true;
+    private boolean hidden = false;
+    private boolean suspended = false;
+    private long timeBeforeSuspend = 0;
+    private long suspendClockPosition = 0;
+    private long suspendClockTime = 0;
 
     private VideoPlayerListener listener;
 
@@ -92,13 +157,60 @@ public class VideoPlayerDesktop implements VideoPlayer {
         }
     }
 
+    /**
+     * Creates a player that decodes to YUV and converts the frames to RGB using the built-in shader.
+     */
     public VideoPlayerDesktop() {
-        this(new DefaultVideoPlayerMesh(), new ShaderProgram(vertexShader, fragmentShader));
+        this(new VideoDecoderConfig());
     }
 
+    /**
+     * Creates a player that provides the frames in RGB to the given shader through the "u_texture" sampler.
+     */
     public VideoPlayerDesktop(VideoPlayerMesh mesh, ShaderProgram shader) {
+        this(new VideoDecoderConfig(), mesh, shader);
+    }
+
+    /**
+     * @see #VideoPlayerDesktop(VideoDecoderConfig, VideoPlayerMesh, ShaderProgram, int)
+     */
+    public VideoPlayerDesktop(VideoPlayerMesh mesh, ShaderProgram shader, int pixelFormat) {
+        this(new VideoDecoderConfig(), mesh, shader, pixelFormat);
+    }
+
+    /**
+     * Creates a player that decodes to YUV and converts the frames to RGB using the built-in shader.
+     */
+    public VideoPlayerDesktop(VideoDecoderConfig config) {
+        this(config, new DefaultVideoPlayerMesh(), obtainSharedYuvShader(), VideoDecoder.PIXEL_FORMAT_YUV420P, true);
+    }
+
+    /**
+     * Creates a player that provides the frames in RGB to the given shader through the "u_texture" sampler.
+     */
+    public VideoPlayerDesktop(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader) {
+        this(config, mesh, shader, VideoDecoder.PIXEL_FORMAT_RGB24);
+    }
+
+    /**
+     * @param config The decoding parameters, of which the player keeps a copy.
+     * @param pixelFormat Either {@link VideoDecoder#PIXEL_FORMAT_RGB24}, in which case the shader gets the frame
+     *        through the "u_texture" sampler, or {@link VideoDecoder#PIXEL_FORMAT_YUV420P}, in which case the
+     *        shader gets the planes through the "u_textureY", "u_textureU" and "u_textureV" samplers. The
+     *        planes are single channel textures, their value is stored in the alpha component.
+     */
+    public VideoPlayerDesktop(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader, int pixelFormat) {
+        this(config, mesh, shader, pixelFormat, false);
+    }
+
+    private VideoPlayerDesktop(VideoDecoderConfig config, VideoPlayerMesh mesh, ShaderProgram shader, int pixelFormat,
+            boolean sharedShader) {
+        this.config = new VideoDecoderConfig(config);
         this.mesh = mesh;
         this.shader = shader;
+        this.sharedShader = sharedShader;
+        this.pixelFormat = pixelFormat;
+        this.textureUniforms = pixelFormat == VideoDecoder.PIXEL_FORMAT_YUV420P ? textureUniformsYuv : textureUniformsRgb;
 
         if (!shader.isCompiled()) {
             Gdx.app.error(TAG, "Error compiling shader: " + shader.getLog());
@@ -109,6 +221,27 @@ public class VideoPlayerDesktop implements VideoPlayer {
 //        }
     }
 
+    private static synchronized ShaderProgram obtainSharedYuvShader() {
+        if (sharedYuvShader == null) {
+            sharedYuvShader = new ShaderProgram(vertexShader, fragmentShaderYuv);
+        }
+        sharedYuvShaderUsers++;
+        return sharedYuvShader;
+    }
+
+    private static synchronized void releaseSharedYuvShader() {
+        if (--sharedYuvShaderUsers == 0) {
+            sharedYuvShader.dispose();
+            sharedYuvShader = null;
+        }
+    }
+
+    /**
+     * Starts preparing the file in the background. Opening the file, probing it, opening the codecs and filling the
+     * buffers all happen on a separate thread, so this returns right away. Once done, {@link #isPrepared()} returns
+     * true and {@link VideoPlayerListener#onVideoPrepared(VideoPlayer, float, float)} is called on the render
+     * thread. The textures are created on the first render after that.
+     */
     @Override
     public void prepare(FileHandle file) {
         if (!file.exists()) {
@@ -116,45 +249,164 @@ public class VideoPlayerDesktop implements VideoPlayer {
             return;
         }
 
+        if (file.type() != Files.FileType.Classpath && file.file().exists()) {
+            // FFmpeg can read files on disk by itself, without calling into Java for every block.
+            startPreparation(new Preparation(file.file().getAbsolutePath(), repeat));
+        } else {
+            // Internal files inside of a jar, and classpath files.
+            VideoSource source;
+            try {
+                source = new FileHandleVideoSource(file);
+            } catch (GdxRuntimeException e) {
+                reportError(e);
+                return;
+            }
+            startPreparation(new Preparation(source, repeat));
+        }
         currentFile = file;
+    }
 
-        if (decoder != null) {
-            // Do all the cleanup
-            stop();
+    /**
+     * Starts preparing a video that is read from the given source, see {@link #prepare(FileHandle)}. The player owns
+     * the source from now on. It is disposed in the background once the video is stopped, as soon as the decoder no
+     * longer reads from it.
+     */
+    public void prepare(VideoSource source) {
+        startPreparation(new Preparation(source, repeat));
+        currentFile = null;
+    }
+
+    private void startPreparation(Preparation preparation) {
+        if (decoder != null || this.preparation != null) {
+            // Do all the cleanup, but keep what the next video may use again.
+            stop(true);
         }
 
-        fileChannel = Channels.newChannel(file.read(1024 * 1024));
+        // The frame buffer memory of the previous video is used again, if it is large enough.
+        preparation.frameMemory = keptFrameMemory;
+        keptFrameMemory = null;
+        // Likely drawn at the same size as the previous video.
+        preparation.outputSize = new int[] { outputWidth, outputHeight, cropX, cropY, cropWidth, cropHeight };
+        preparation.audioEnabled = audioEnabled;
+        this.preparation = preparation;
+        Thread thread = new Thread(preparation, "VideoPlayerPrepare");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-        decoder = new VideoDecoder();
-        VideoDecoderBuffers buffers;
-        try {
-            buffers = decoder.loadStream(this, "readFileContents");
+    /**
+     * Loads a video on a background thread, and hands the result to the render thread.
+     */
+    private final class Preparation implements Runnable {
+        /** Either the source to read from, or the path of a file that is opened natively. */
+        private VideoSource source;
+        private final String path;
+        private final boolean looping;
+        private VideoDecoder decoder;
+        private VideoDecoder.FrameMemory frameMemory;
+        private int[] outputSize;
+        private boolean audioEnabled;
+        private VideoDecoderBuffers buffers;
+        private Exception error;
 
-            if (buffers != null) {
-                ByteBuffer audioBuffer = buffers.getAudioBuffer();
-                if (audioBuffer != null) {
-                    audioBuffer.position(audioBuffer.limit());
+        Preparation(VideoSource source, boolean looping) {
+            this.source = source;
+            this.path = null;
+            this.looping = looping;
+        }
+
+        Preparation(String path, boolean looping) {
+            this.source = null;
+            this.path = path;
+            this.looping = looping;
+        }
 
-                    audio = new RawMusic(decoder, audioBuffer, buffers.getAudioChannels(), buffers.getAudioSampleRate());
-                    audio.setVolume(volume);
+        @Override
+        public void run() {
+            try {
+                decoder = new VideoDecoder();
+                decoder.setLooping(looping);
+                if (frameMemory != null) {
+                    decoder.reuseFrameMemory(frameMemory);
                 }
-            } else {
-                throw new IOException("Error initializing decoder buffers.");
+                decoder.setOutputSize(outputSize[0], outputSize[1], outputSize[2], outputSize[3], outputSize[4],
+                        outputSize[5]);
+                decoder.setAudioEnabled(audioEnabled);
+                // Blocks until the buffers are filled.
+                if (path != null) {
+                    buffers = decoder.loadFile(path, pixelFormat, config);
+                } else {
+                    // The decoder owns the source from here on, and disposes it once it no longer reads from it.
+                    VideoSource streamSource = source;
+                    source = null;
+                    buffers = decoder.loadStream(streamSource, pixelFormat, config);
+                }
+                if (buffers == null) {
+                    throw new IOException("Error initializing decoder buffers.");
+                }
+            } catch (Exception e) {
+                error = e;
             }
-        } catch (Exception e) {
-            reportError(e);
+
+            Gdx.app.postRunnable(new Runnable() {
+                @Override
+                public void run() {
+                    finishPrepare(Preparation.this);
+                }
+            });
+        }
+
+        void dispose() {
+            if (frameMemory != null) {
+                // Only still holds memory when the decoder did not take it over.
+                frameMemory.dispose();
+                frameMemory = null;
+            }
+            if (decoder != null) {
+                decoder.dispose();
+                decoder = null;
+            }
+            if (source != null) {
+                source.dispose();
+                source = null;
+            }
+        }
+    }
+
+    private void finishPrepare(Preparation preparation) {
+        if (preparation != this.preparation) {
+            // Stopped, or another file got prepared in the meantime.
+            preparation.dispose();
             return;
         }
+        this.preparation = null;
 
-        currentVideoWidth = buffers.getVideoWidth();
-        currentVideoHeight = buffers.getVideoHeight();
+        if (preparation.error != null) {
+            preparation.dispose();
+            reportError(preparation.error);
+            return;
+        }
 
-        mesh.setDimensions(0f, 0f, currentVideoWidth, currentVideoHeight);
+        decoder = preparation.decoder;
+        buffers = preparation.buffers;
+        // Repeat may have changed while preparing.
+        decoder.setLooping(repeat);
+        decoder.setDecodePriority(decodePriority);
+
+        // Only videos with sound have an audio buffer.
+        if (buffers.getAudioBuffer() != null && audioEnabled) {
+            audio = new RawMusic(decoder, buffers.getAudioChannels(), buffers.getAudioSampleRate());
+            audio.setVolume(volume);
+        }
+        if (preparation.audioEnabled != audioEnabled) {
+            // Changed while preparing.
+            applyAudioEnabled();
+        }
 
-        pixmap = new Pixmap(currentVideoWidth, currentVideoHeight, Format.RGB888);
-        textureData = new PixmapTextureData(pixmap, Format.RGB888, false, false);
-        texture = new Texture(textureData);
-        texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        currentVideoWidth = buffers.getVideoSourceWidth();
+        currentVideoHeight = buffers.getVideoSourceHeight();
+
+        mesh.setDimensions(0f, 0f, currentVideoWidth, currentVideoHeight);
 
         if (listener != null) {
             listener.onVideoPrepared(this, currentVideoWidth, currentVideoHeight);
@@ -162,8 +414,178 @@ public class VideoPlayerDesktop implements VideoPlayer {
     }
 
     /**
-     * Will return whether the buffer is filled. At the time of writing, the buffer used can store 10 frames
-     * of video. You can find the value in jni/VideoDecoder.h
+     * Creates the textures for the prepared video, if not done yet. The textures of the previous video are used
+     * again when they fit.
+     */
+    private VideoFrameTextures getFrameTextures() {
+        if (frameTextures == null) {
+            if (keptFrameTextures != null && keptFrameTextures.isCompatible(buffers, pixelFormat, numPixelBuffers)) {
+                keptFrameTextures.setBuffers(buffers);
+                frameTextures = keptFrameTextures;
+            } else {
+                if (keptFrameTextures != null) {
+                    keptFrameTextures.dispose();
+                }
+                frameTextures = new VideoFrameTextures(buffers, pixelFormat, numPixelBuffers);
+            }
+            keptFrameTextures = null;
+        }
+        return frameTextures;
+    }
+
+    /**
+     * Sets whether frames should be streamed to the GPU through pixel buffer objects. This makes the texture upload
+     * asynchronous, so the render thread never waits for the transfer of a frame. Each PBO comes with its own set of
+     * textures, which the frames are rotated through. When pixel buffer objects are not supported, frames are
+     * uploaded directly. Takes effect when the textures of the next prepared video are created.
+     *
+     * @param numPixelBuffers 2 or 3 for double or triple buffering, or 0 (default) to upload frames directly.
+     */
+    public void setNumPixelBuffers(int numPixelBuffers) {
+        this.numPixelBuffers = numPixelBuffers;
+    }
+
+    public int getNumPixelBuffers() {
+        return numPixelBuffers;
+    }
+
+    /**
+     * Sets the priority of this player's video among all videos that are decoded, see
+     * {@link VideoDecoder#setDecodePriority(int)}. Players that matter most, like a cutscene, should get a higher
+     * priority than background videos.
+     */
+    public void setDecodePriority(int decodePriority) {
+        this.decodePriority = decodePriority;
+        if (decoder != null) {
+            decoder.setDecodePriority(decodePriority);
+        }
+    }
+
+    public int getDecodePriority() {
+        return decodePriority;
+    }
+
+    /**
+     * Sets whether frames are scaled down to the size the video is drawn at, which is the default. A thumbnail is
+     * then converted and uploaded at the size of the thumbnail, instead of at the size of the video. The frame size
+     * follows the drawn size with some delay, so a video that is enlarged looks blurry for a moment.
+     */
+    public void setScaleToDrawnSize(boolean scaleToDrawnSize) {
+        this.scaleToDrawnSize = scaleToDrawnSize;
+        if (!scaleToDrawnSize && (outputWidth != 0 || outputHeight != 0)) {
+            outputWidth = 0;
+            outputHeight = 0;
+            applyOutputSize();
+        }
+    }
+
+    public boolean isScaleToDrawnSize() {
+        return scaleToDrawnSize;
+    }
+
+    /**
+     * Sets whether the audio of the video is played. Unlike a volume of 0, disabling the audio skips decoding it, and
+     * makes the demuxer discard it, so a silent decoration video only costs decoding the video. When disabled before
+     * preparing, the audio stream is not even opened. Can be changed at any time, the playback position is kept.
+     * The default is true.
+     */
+    public void setAudioEnabled(boolean audioEnabled) {
+        if (this.audioEnabled == audioEnabled) return;
+        this.audioEnabled = audioEnabled;
+        applyAudioEnabled();
+    }
+
+    public boolean isAudioEnabled() {
+        return audioEnabled;
+    }
+
+    private void applyAudioEnabled() {
+        if (!isPrepared()) return;
+
+        if (!audioEnabled) {
+            if (audio != null) {
+                // The wall clock takes over from where the audio is.
+                long playbackTime = getPlaybackTime();
+                audio.dispose();
+                audio = null;
+                if (startTime != 0 && !paused && !suspended) {
+                    startTime = System.currentTimeMillis() - playbackTime;
+                }
+            }
+            decoder.setAudioEnabled(false);
+            return;
+        }
+
+        VideoDecoderBuffers newBuffers = decoder.setAudioEnabled(true);
+        if (newBuffers == null || newBuffers.getAudioBuffer() == null || audio != null) return;
+        buffers = newBuffers;
+        audio = new RawMusic(decoder, buffers.getAudioChannels(), buffers.getAudioSampleRate());
+        audio.setVolume(volume);
+        // The decoder read ahead of playback without audio, so the audio only lines up after a seek.
+        seekTo(getPosition());
+    }
+
+    /**
+     * Shows only a part of the video. The rest of it is never converted or uploaded. The size the video reports
+     * becomes the size of the part. Takes effect right away, and is kept for the videos prepared next.
+     *
+     * @param x The left edge of the part, in pixels of the video.
+     * @param y The top edge of the part, in pixels of the video.
+     * @param width The width of the part, or 0 to show the whole video.
+     * @param height The height of the part, or 0 to show the whole video.
+     */
+    public void setCrop(int x, int y, int width, int height) {
+        cropX = x;
+        cropY = y;
+        cropWidth = width;
+        cropHeight = height;
+        applyOutputSize();
+    }
+
+    /**
+     * Scales the frames down when the video is drawn much smaller than they are, and back up when it is drawn larger.
+     */
+    @Override
+    public void setDrawnSize(int width, int height) {
+        if (!scaleToDrawnSize || !isPrepared() || width <= 0 || height <= 0) return;
+
+        // Stretched videos need the resolution of the direction they are stretched in most.
+        int sourceWidth = buffers.getVideoSourceWidth();
+        int sourceHeight = buffers.getVideoSourceHeight();
+        float scale = Math.min(1f, Math.max((float)width / sourceWidth, (float)height / sourceHeight));
+        int wantedWidth = Math.round(sourceWidth * scale);
+        int wantedHeight = Math.round(sourceHeight * scale);
+
+        int frameWidth = buffers.getVideoWidth();
+        int frameHeight = buffers.getVideoHeight();
+        boolean tooSmall = wantedWidth > frameWidth * 5 / 4 || wantedHeight > frameHeight * 5 / 4;
+        boolean tooLarge = wantedWidth < frameWidth / 2 && wantedHeight < frameHeight / 2;
+        if (!tooSmall && !tooLarge) {
+            resizeRequestTime = 0;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (resizeRequestTime == 0) {
+            resizeRequestTime = now;
+        } else if (now - resizeRequestTime >= RESIZE_DELAY_MILLIS) {
+            resizeRequestTime = 0;
+            outputWidth = wantedWidth;
+            outputHeight = wantedHeight;
+            applyOutputSize();
+        }
+    }
+
+    private void applyOutputSize() {
+        if (!isPrepared()) return;
+
+        // Doesn't wait, the frames already decoded at the old size are shown first. See uploadFrame.
+        decoder.setOutputSize(outputWidth, outputHeight, cropX, cropY, cropWidth, cropHeight);
+    }
+
+    /**
+     * Will return whether the video finished preparing in the background, which includes filling the buffer. The
+     * amount of frames the buffer holds is set by {@link VideoDecoderConfig#numBufferedFrames}.
      *
      * @return whether buffer is filled.
      */
@@ -179,7 +601,9 @@ public class VideoPlayerDesktop implements VideoPlayer {
         }
         if (playing) return;
 
-        //TODO Reset the playback to the very beginning in case it's finished.
+        if (completed) {
+            seekTo(0);
+        }
         playing = true;
     }
 
@@ -188,138 +612,378 @@ public class VideoPlayerDesktop implements VideoPlayer {
         this.projectionMatrix.set(projectionMatrix);
     }
 
+    @Override
+    public void render(float x, float y, float width, float height) {
+        mesh.setDimensions(x, y, width, height);
+        if (scaleToDrawnSize) {
+            // The projection maps the drawn area to a part of the back buffer.
+            float pixelsPerUnitX = Math.abs(projectionMatrix.val[Matrix4.M00]) * Gdx.graphics.getBackBufferWidth() / 2f;
+            float pixelsPerUnitY = Math.abs(projectionMatrix.val[Matrix4.M11]) * Gdx.graphics.getBackBufferHeight() / 2f;
+            setDrawnSize((int)(width * pixelsPerUnitX), (int)(height * pixelsPerUnitY));
+        }
+
+        // Always render the last decoded frame (if present).
+        advance();
+        renderTexture();
+    }
+
     /**
-     * Called by jni to fill in the file buffer.
-     *
-     * @param buffer The buffer that needs to be filled
-     * @return The amount that has been filled into the buffer.
+     * The frame is rendered through the shader of the player to an offscreen buffer, which the region shows. The color
+     * of the player is not applied.
      */
-    @SuppressWarnings("unused")
-    private int readFileContents(ByteBuffer buffer) {
-        try {
-            buffer.rewind();
-            return fileChannel.read(buffer);
-        } catch (IOException e) {
-            Gdx.app.error(TAG, "Error reading video data from file: " + currentFile, e);
+    @Override
+    public boolean update() {
+        boolean newFrame = advance();
+        if (frameChanged && frameTextures != null) {
+            updateTextureRegion();
+            // A frame uploaded through a pixel buffer is only drawn from the next render frame on.
+            frameChanged = frameTextures.isUploadInFlight();
+            return true;
         }
-        return 0;
+        return newFrame;
     }
 
     @Override
-    public void render(float x, float y, float width, float height) {
-        mesh.setDimensions(x, y, width, height);
+    public TextureRegion getTextureRegion() {
+        return textureRegionReady ? textureRegion : null;
+    }
 
-        if (!isPrepared() || paused || !playing) {
-            // Always render the last decoded frame (if present).
-            if (texture != null) {
-                renderTexture();
+    /**
+     * Moves playback on to the frame that is due now, and uploads it.
+     *
+     * @return Whether a new frame was uploaded.
+     */
+    private boolean advance() {
+        if (!isPrepared() || hidden) {
+            return false;
+        }
+
+        if (seekPending) {
+            if (!decoder.isReadyToPlay()) {
+                // The frame from before the seek stays shown, and the clock only starts once the new one is there.
+                return false;
             }
-            return;
+            seekPending = false;
+            // Show the frame at the new position, also when not playing.
+            int frameIndex = decoder.nextVideoFrameIndex();
+            if (frameIndex >= 0) {
+                uploadFrame(frameIndex);
+                showAlreadyDecodedFrame = true;
+                return true;
+            }
+        }
+
+        if (paused || !playing) {
+            return false;
         }
 
         if (startTime == 0) {
             // Since startTime is 0, this means that we should now display the first frame of the video, and set the time.
-            startTime = System.currentTimeMillis();
+            startTime = System.currentTimeMillis() - startPosition;
             if (audio != null) {
                 audio.play();
             }
         }
 
+        long currentVideoTime = getPlaybackTime();
+
+        boolean newFrame = false;
         if (!showAlreadyDecodedFrame) {
-            ByteBuffer videoData = decoder.nextVideoFrame();
-            if (videoData != null) {
-                ByteBuffer data = pixmap.getPixels();
-                data.rewind();
-                data.put(videoData);
-                data.rewind();
-                texture.load(textureData);
+            // When rendering can't keep up with the video, skip to the frame that is due now, instead of falling
+            // further behind the audio.
+            decoder.dropLateVideoFrames(currentVideoTime / 1000.0);
+            int frameIndex = decoder.nextVideoFrameIndex();
+            if (frameIndex == VideoDecoder.FRAME_UNCHANGED) {
+                // The decoder is behind, the frame that is shown stays until the next one is there.
+                return false;
+            } else if (frameIndex >= 0) {
+                uploadFrame(frameIndex);
+                newFrame = true;
             } else {
-                // Repeat functionality.
-                if (repeat) {
-                    //TODO Find a way to repeat without recreating the buffers.
-                    prepare(currentFile);
-                    play();
-                    render(x, y, width, height);
-                }
-
-                renderTexture();
-
+                // When repeating, the decoder loops by itself, so this is only reached when the video really ended.
                 if (playing) {
+                    timeBeforePause = currentVideoTime;
+                    completed = true;
+                    playing = false;
                     if (listener != null) {
                         listener.onVideoCompleted(this);
                     }
-                    playing = false;
                 }
-                return;
+                return false;
             }
         }
 
         showAlreadyDecodedFrame = false;
         long currentFrameTimestamp = (long)(decoder.getCurrentFrameTimestamp() * 1000);
-        long currentVideoTime = (System.currentTimeMillis() - startTime);
         int difference = (int)(currentFrameTimestamp - currentVideoTime);
         if (difference > 20) {
             // Difference is more than a frame, draw this one twice
             showAlreadyDecodedFrame = true;
         }
+        return newFrame;
+    }
 
-        renderTexture();
+    private void uploadFrame(int frameIndex) {
+        if (decoder.getBuffers() != buffers) {
+            // The first frame at the size set by applyOutputSize. The textures keep showing the last frame, until
+            // this one replaces them.
+            buffers = decoder.getBuffers();
+            currentVideoWidth = buffers.getVideoSourceWidth();
+            currentVideoHeight = buffers.getVideoSourceHeight();
+            frameTexturesStale = true;
+        }
+        if (frameTexturesStale) {
+            // The frame size changed, the textures are created again, or used again when they still fit.
+            frameTexturesStale = false;
+            if (frameTextures != null) {
+                if (keptFrameTextures != null) {
+                    keptFrameTextures.dispose();
+                }
+                keptFrameTextures = frameTextures;
+                frameTextures = null;
+            }
+        }
+        getFrameTextures().upload(frameIndex);
+        frameChanged = true;
+    }
+
+    private void updateTextureRegion() {
+        if (textureRegion == null) {
+            textureRegion = new TextureRegion();
+        }
+        // Also an RGB frame is rendered through the shader of the player, which may do more than sampling it.
+        textureRegion.setRegion(convertFrame());
+        // The offscreen buffer is upside down.
+        textureRegion.flip(false, true);
+        textureRegionReady = true;
+    }
+
+    /**
+     * Renders the current frame to the offscreen buffer, which is created when needed.
+     *
+     * @return The texture of the offscreen buffer.
+     */
+    private Texture convertFrame() {
+        int frameWidth = buffers.getVideoWidth();
+        int frameHeight = buffers.getVideoHeight();
+        if (frameBuffer != null && (frameBuffer.getWidth() != frameWidth || frameBuffer.getHeight() != frameHeight)) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+        }
+        if (frameBuffer == null) {
+            // A shader that is not the built-in one may output transparency.
+            Pixmap.Format format = sharedShader ? Pixmap.Format.RGB888 : Pixmap.Format.RGBA8888;
+            frameBuffer = new FrameBuffer(format, frameWidth, frameHeight, false);
+            frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+            if (conversionMesh == null) {
+                conversionMesh = new DefaultVideoPlayerMesh();
+            }
+            conversionMesh.setDimensions(0f, 0f, frameWidth, frameHeight);
+            conversionProjection.setToOrtho2D(0f, 0f, frameWidth, frameHeight);
+        }
+
+        frameBuffer.begin();
+        // The frame replaces the previous one, the batch blends it later on.
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        renderFrame(conversionMesh, conversionProjection);
+        frameBuffer.end();
+        return frameBuffer.getColorBufferTexture();
+    }
+
+    /**
+     * @return The current playback time in milliseconds. When the video has audio, this follows the audio OpenAL
+     *         actually played, so the video stays in sync with what is heard. Otherwise the wall clock is used.
+     */
+    private long getPlaybackTime() {
+        if (startTime == 0) return startPosition;
+        if (suspended) {
+            // The video isn't advanced while hidden, but its clock keeps running.
+            return suspendClockPosition + System.currentTimeMillis() - suspendClockTime;
+        }
+        if (audio != null && audio.isPlaying()) {
+            // Silence played while decoding could not keep up doesn't move the video on.
+            return startPosition + (long)(audio.getVideoPosition() * 1000);
+        }
+        return System.currentTimeMillis() - startTime;
     }
 
     private void renderTexture() {
-        if (texture == null) return;
+        if (frameTextures == null) return;
 
         Gdx.gl.glEnable(GL20.GL_BLEND);
         Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
 
-        texture.bind();
+        renderFrame(mesh, projectionMatrix);
+    }
+
+    private void renderFrame(VideoPlayerMesh mesh, Matrix4 projectionMatrix) {
+        frameTextures.bind();
         shader.begin();
         shader.setUniformMatrix("u_projTrans", projectionMatrix);
-        shader.setUniformi("u_texture", 0);
+        for (int i = 0; i < frameTextures.getNumPlanes(); i++) {
+            shader.setUniformi(textureUniforms[i], i);
+        }
         mesh.render(shader);
         shader.end();
     }
 
     @Override
     public void stop() {
+        stop(false);
+    }
+
+    /**
+     * Stops playback, and brings the player back to the state it was in before the video was prepared. It keeps its
+     * textures and the memory of its frame buffer, so preparing a video with the same dimensions next allocates
+     * neither. Used to put a player back in a {@link VideoPlayerPool}.
+     */
+    void recycle() {
+        stop(true);
+        paused = false;
+        currentFile = null;
+        currentVideoWidth = 0;
+        currentVideoHeight = 0;
+        // The next video is not drawn like this one, nor cropped.
+        scaleToDrawnSize = true;
+        outputWidth = 0;
+        outputHeight = 0;
+        cropX = 0;
+        cropY = 0;
+        cropWidth = 0;
+        cropHeight = 0;
+        audioEnabled = true;
+        decodePriority = 0;
+    }
+
+    /**
+     * @param keepResources Whether the textures and the frame buffer memory are kept for the next video.
+     */
+    private void stop(boolean keepResources) {
         playing = false;
+        suspended = false;
+        resizeRequestTime = 0;
+        frameTexturesStale = false;
 
         if (audio != null) {
             audio.dispose();
             audio = null;
         }
-        textureData = null;
-        if (texture != null) {
-            texture.dispose();
-            texture = null;
-        }
-        if (pixmap != null) {
-            pixmap.dispose();
-            pixmap = null;
+        if (frameTextures != null) {
+            if (keepResources) {
+                if (keptFrameTextures != null) {
+                    keptFrameTextures.dispose();
+                }
+                keptFrameTextures = frameTextures;
+            } else {
+                frameTextures.dispose();
+            }
+            frameTextures = null;
         }
         if (decoder != null) {
-            decoder.dispose();
+            if (keepResources) {
+                VideoDecoder.FrameMemory frameMemory = decoder.disposeKeepingFrameMemory();
+                if (frameMemory != null) {
+                    if (keptFrameMemory != null) {
+                        keptFrameMemory.dispose();
+                    }
+                    keptFrameMemory = frameMemory;
+                }
+            } else {
+                decoder.dispose();
+            }
             decoder = null;
         }
-        if (fileChannel != null) {
-            try {
-                fileChannel.close();
-            } catch (IOException e) {
-                Gdx.app.error(TAG, "Exception while closing file channel", e);
+        textureRegionReady = false;
+        frameChanged = false;
+        if (!keepResources) {
+            if (frameBuffer != null) {
+                frameBuffer.dispose();
+                frameBuffer = null;
+            }
+            if (keptFrameTextures != null) {
+                keptFrameTextures.dispose();
+                keptFrameTextures = null;
+            }
+            if (keptFrameMemory != null) {
+                keptFrameMemory.dispose();
+                keptFrameMemory = null;
             }
-            fileChannel = null;
         }
+        buffers = null;
+        // A preparation that is still running cleans up after itself.
+        preparation = null;
 
         startTime = 0;
+        startPosition = 0;
+        completed = false;
         showAlreadyDecodedFrame = false;
+        seekPending = false;
+    }
+
+    @Override
+    public void seekTo(long positionMillis) {
+        if (!isPrepared()) {
+            throw new IllegalStateException("The player shall be prepared prior seeking.");
+        }
+        positionMillis = Math.max(0, positionMillis);
+
+        if (audio != null) {
+            audio.stop();
+        }
+        try {
+            decoder.seek(positionMillis);
+            // The decoder fills its buffers in the background, the next renders pick up the new frame.
+            showAlreadyDecodedFrame = false;
+            seekPending = true;
+        } catch (Exception e) {
+            reportError(e);
+            positionMillis = getPosition();
+        }
+
+        completed = false;
+        // When hidden, playback starts from the new position once shown.
+        suspended = false;
+        startPosition = positionMillis;
+        if (paused) {
+            // Resuming continues the clock and the audio from here.
+            startTime = System.currentTimeMillis() - positionMillis;
+            timeBeforePause = positionMillis;
+        } else {
+            // The next render restarts the clock and the audio from here.
+            startTime = 0;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        if (!isPrepared()) return 0;
+        if (startTime == 0) return startPosition;
+        long position = paused || !playing ? timeBeforePause : getPlaybackTime();
+        if (repeat) {
+            // The clock keeps running over loops.
+            long duration = decoder.getDuration();
+            if (duration > 0) {
+                position %= duration;
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public long getDuration() {
+        if (!isPrepared()) return -1;
+
+        return decoder.getDuration();
     }
 
     @Override
     public void pause() {
         if (!paused) {
             paused = true;
-            audio.pause();
-            timeBeforePause = System.currentTimeMillis() - startTime;
+            timeBeforePause = getPlaybackTime();
+            if (audio != null) {
+                audio.pause();
+            }
         }
     }
 
@@ -327,18 +991,81 @@ public class VideoPlayerDesktop implements VideoPlayer {
     public void resume() {
         if (paused) {
             paused = false;
-            audio.play();
+            if (suspended) {
+                // Stays silent until shown, the clock continues from here.
+                suspendClockPosition = timeBeforePause;
+                suspendClockTime = System.currentTimeMillis();
+                return;
+            }
+            if (audio != null) {
+                audio.play();
+            }
             startTime = System.currentTimeMillis() - timeBeforePause;
         }
     }
 
+    /**
+     * While hidden, frames are neither uploaded nor converted, and the audio is paused. Once the decoder filled its
+     * buffer, it stops decoding, so a hidden video costs next to nothing. The playback clock keeps running, and when
+     * the video is shown again, it seeks to where it should be by now.
+     */
+    @Override
+    public void setVisible(boolean visible) {
+        if (hidden != visible) return;
+        hidden = !visible;
+
+        if (hidden) {
+            // A video that did not start yet starts when it is shown.
+            if (!isPrepared() || !playing || paused || startTime == 0) return;
+            timeBeforeSuspend = getPlaybackTime();
+            suspendClockPosition = timeBeforeSuspend;
+            suspendClockTime = System.currentTimeMillis();
+            suspended = true;
+            if (audio != null) {
+                audio.pause();
+            }
+        } else if (suspended) {
+            long position = paused ? timeBeforePause : getPlaybackTime();
+            suspended = false;
+
+            if (position - timeBeforeSuspend < CATCH_UP_THRESHOLD_MILLIS) {
+                // Continue where the video stopped.
+                if (paused) {
+                    timeBeforePause = timeBeforeSuspend;
+                } else {
+                    startTime = System.currentTimeMillis() - timeBeforeSuspend;
+                    if (audio != null) {
+                        audio.play();
+                    }
+                }
+                return;
+            }
+
+            long duration = decoder.getDuration();
+            if (duration > 0) {
+                position = repeat ? position % duration : Math.min(position, duration);
+            }
+            seekTo(position);
+        }
+    }
+
     @Override
     public void dispose() {
+        if (disposed) return;
+        disposed = true;
         stop();
 
         if (mesh != null) {
             mesh.dispose();
         }
+        if (conversionMesh != null) {
+            conversionMesh.dispose();
+        }
+        if (sharedShader) {
+            releaseSharedYuvShader();
+        } else {
+            shader.dispose();
+        }
     }
 
     @Override
@@ -393,6 +1120,10 @@ public class VideoPlayerDesktop implements VideoPlayer {
     @Override
     public void setRepeat(boolean repeat) {
         this.repeat = repeat;
+
+        if (decoder != null) {
+            decoder.setLooping(repeat);
+        }
     }
 
     @Override
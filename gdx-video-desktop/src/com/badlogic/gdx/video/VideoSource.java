@@ -0,0 +1,49 @@
+package com.badlogic.gdx.video;
+
+import com.badlogic.gdx.utils.Disposable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The data of a video, as read by the native decoder. The decoder calls these methods from its own threads, but never
+ * from two threads at the same time. A player that is given a source owns it, and disposes it when the video is
+ * stopped.
+ *
+ * @see FileChannelVideoSource
+ * @see ByteBufferVideoSource
+ * @see FileHandleVideoSource
+ * @see InputStreamVideoSource
+ */
+public interface VideoSource extends Disposable {
+
+    /**
+     * Reads the next bytes of the video into the buffer, from its position up to its limit.
+     *
+     * @return The amount of bytes read, or -1 when the end of the video is reached.
+     */
+    int read(ByteBuffer buffer) throws IOException;
+
+    /**
+     * @return Whether {@link #seek(long)} can move to any position. When false, the decoder only reads forward, and
+     *         seeking in the video is not possible.
+     */
+    boolean isSeekable();
+
+    /**
+     * Moves to the given position, from where the next read continues.
+     *
+     * @return Whether the position could be reached.
+     */
+    boolean seek(long position) throws IOException;
+
+    /**
+     * @return The current position in bytes from the start of the video.
+     */
+    long position();
+
+    /**
+     * @return The size of the video in bytes, or -1 when it is not known.
+     */
+    long size();
+}